@@ -0,0 +1,74 @@
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Measures the generation of the LLVM code of programs by {@link LLVMParser}: the best time of several rounds and the
+ * bytes allocated by a round, or with {@code --size} the size of the code and its number of loads.
+ *
+ * Only the API which the compiler has had from the start is used, {@code new Parser(FileReader).parse()} and
+ * {@code new LLVMParser().generate(ParseTree)}, so that the same harness measures older builds too. For the same
+ * reason, the SSA generator of {@code --ssa} is made by reflection.
+ *
+ * Usage: java CodegenBench [--ssa] [--size] FILE...
+ */
+public class CodegenBench {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        boolean ssa = false;
+        boolean size = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "--ssa" -> ssa = true;
+                case "--size" -> size = true;
+                default -> measure(arg, ssa, size);
+            }
+        }
+    }
+
+    private static void measure(String file, boolean ssa, boolean size) throws Exception {
+        ParseTree tree;
+        try {
+            tree = new Parser(new FileReader(file)).parse();
+        } catch (Exception e) {
+            System.out.println(file + ": Error:> " + e.getMessage());
+            return;
+        }
+        if (size) {
+            String code = generator(ssa).generate(tree)[1];
+            System.out.printf(Locale.ROOT, "%-40s %12d bytes %10d loads%n", file,
+                    code.getBytes(StandardCharsets.UTF_8).length, count(code, " = load "));
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            LLVMParser generator = generator(ssa);
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            generator.generate(tree);
+            long time = System.nanoTime() - start;
+            allocated = threads.getCurrentThreadAllocatedBytes() - bytes;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, time);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-40s %10.1f ms %12d KB allocated%n", file, best / 1e6, allocated / 1024);
+    }
+
+    private static LLVMParser generator(boolean ssa) throws ReflectiveOperationException {
+        return ssa ? LLVMParser.class.getConstructor(boolean.class).newInstance(true) : new LLVMParser();
+    }
+
+    private static int count(String text, String pattern) {
+        int count = 0;
+        for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Measures the lexing of programs read from memory: the best time of several rounds, the throughput, and the bytes
+ * allocated per token by a round, the lexer being made before the measure.
+ *
+ * By default the JFlex {@link LexicalAnalyzer} records the tokens in a {@link TokenBuffer} of the size used by the
+ * parser, cleared after each fill. {@code --next-token} returns them as {@link Symbol}s instead, and {@code --hand}
+ * records them with the {@link HandWrittenLexer}. Each option applies to the files after it.
+ *
+ * Usage: java LexerBench [--next-token | --hand] FILE...
+ */
+public class LexerBench {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * The ways of lexing measured.
+     */
+    private enum Mode {
+        FILL("fill"), NEXT_TOKEN("nextToken"), HAND("hand");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Mode mode = Mode.FILL;
+        for (String arg : args) {
+            switch (arg) {
+                case "--next-token" -> mode = Mode.NEXT_TOKEN;
+                case "--hand" -> mode = Mode.HAND;
+                default -> measure(arg, mode);
+            }
+        }
+    }
+
+    private static void measure(String file, Mode mode) throws IOException {
+        String text = Files.readString(Path.of(file));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        long tokens = 0;
+        TokenBuffer buffer = new TokenBuffer(BUFFER_SIZE);
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            TokenSource lexer = mode == Mode.HAND
+                    ? new HandWrittenLexer(new StringReader(text))
+                    : new LexicalAnalyzer(new StringReader(text));
+            buffer.reset();
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            tokens = mode == Mode.NEXT_TOKEN ? lexSymbols((LexicalAnalyzer) lexer) : lexBuffered(lexer, buffer);
+            long time = System.nanoTime() - start;
+            allocated = threads.getCurrentThreadAllocatedBytes() - bytes;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, time);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-40s %-10s %10d tokens %9.1f ms %8.1f MB/s %8.2f B/token%n", file,
+                mode.label, tokens, best / 1e6, text.length() / (best / 1e3), (double) allocated / tokens);
+    }
+
+    private static long lexSymbols(LexicalAnalyzer lexer) throws IOException {
+        long tokens = 1;
+        while (lexer.nextToken().getType() != LexicalUnit.EOS) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    private static long lexBuffered(TokenSource lexer, TokenBuffer buffer) throws IOException {
+        long tokens = 0;
+        do {
+            buffer.clear();
+            lexer.fill(buffer);
+            tokens += buffer.size();
+        } while (buffer.getType(buffer.size() - 1) != LexicalUnit.EOS);
+        return tokens;
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates GILLES programs for the benchmarks and the scaling checks, on the standard output.
+ *
+ * The programs only depend on the arguments, the random choices being made with a fixed seed, so that a measure can be
+ * repeated on the same input, or on another build of the compiler. The shapes are:
+ * <ul>
+ * <li>{@code mixed N [VARIABLES]}: N statements, mostly assignments of small expressions, with IF/ELSE, WHILE, OUT
+ * and unary minus, over 20 variables by default.</li>
+ * <li>{@code straight N}: N assignments {@code vI = vJ + K :} over 50 variables.</li>
+ * <li>{@code chains N}: a sum of N terms, a product of N factors and a condition of N implications, printing N and 1.</li>
+ * <li>{@code corpus N}: N small random programs one after the other, to be lexed but not parsed as a whole.</li>
+ * <li>{@code comments N}: N comments of 200 to 3000 characters between assignments.</li>
+ * <li>{@code longcomment N}: one comment of N characters.</li>
+ * <li>{@code loop}: a WHILE loop on an implication, running as many times as its input.</li>
+ * <li>{@code badtoken N}: N assignments {@code x = 1 :} followed by a character that no token matches.</li>
+ * </ul>
+ */
+public class ProgramGenerator {
+    private final Writer out;
+    private final Random random = new Random(1);
+
+    private ProgramGenerator(Writer out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage:  java ProgramGenerator SHAPE [SIZE] [VARIABLES]\n"
+                    + "\tSHAPE: mixed, straight, chains, corpus, comments, longcomment, loop or badtoken");
+            System.exit(1);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        ProgramGenerator generator = new ProgramGenerator(out);
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        switch (args[0]) {
+            case "mixed" -> generator.mixed(size, args.length > 2 ? Integer.parseInt(args[2]) : 20);
+            case "straight" -> generator.straight(size);
+            case "chains" -> generator.chains(size);
+            case "corpus" -> generator.corpus(size);
+            case "comments" -> generator.comments(size);
+            case "longcomment" -> generator.longComment(size);
+            case "loop" -> generator.loop();
+            case "badtoken" -> generator.badToken(size);
+            default -> {
+                System.err.println("Error:> Unknown shape: " + args[0]);
+                System.exit(1);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a line of the program.
+     */
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+    }
+
+    private String variable(int count) {
+        return "v" + random.nextInt(count);
+    }
+
+    /**
+     * Writes statements mixing assignments, conditionals, loops, outputs and unary minus.
+     *
+     * @param statements The number of statements, besides the initial assignments of the variables.
+     * @param variables The number of variables.
+     */
+    private void mixed(int statements, int variables) throws IOException {
+        line("LET Big BE");
+        for (int v = 0; v < variables; v++) {
+            line("  v" + v + " = " + (1 + random.nextInt(9)) + ":");
+        }
+        for (int i = 0; i < statements; i++) {
+            String v = variable(variables);
+            switch (i % 10) {
+                case 6 -> line("  IF {" + variable(variables) + " < " + expression(variables) + " -> " + v
+                        + " == 3} THEN " + v + " = " + expression(variables) + ": ELSE " + v + " = 1: END:");
+                case 7 -> line("  WHILE {" + v + " < 0} REPEAT " + v + " = " + v + " + 1: END:");
+                case 8 -> line("  OUT(" + v + "):");
+                case 9 -> line("  " + v + " = -" + variable(variables) + " / 3:");
+                default -> line("  " + v + " = " + expression(variables) + ":");
+            }
+        }
+        line("END");
+    }
+
+    private String expression(int variables) {
+        return variable(variables) + " + " + variable(variables) + " * (" + variable(variables) + " - "
+                + (1 + random.nextInt(9)) + ")";
+    }
+
+    /**
+     * Writes assignments of a variable plus a constant to a variable, without any control flow.
+     *
+     * @param statements The number of assignments.
+     */
+    private void straight(int statements) throws IOException {
+        line("LET Big BE");
+        for (int i = 0; i < statements; i++) {
+            line("  v" + i % 50 + " = v" + 7L * i % 50 + " + " + i % 7 + " :");
+        }
+        line("END");
+    }
+
+    /**
+     * Writes the longest chains of the grammar: a sum, a product and a condition as long as asked, which the parser
+     * and the code generators follow with loops. The program prints the sum, N, and the product, 1.
+     *
+     * @param length The number of terms, factors and comparisons of the chains.
+     */
+    private void chains(int length) throws IOException {
+        line("LET Chains BE");
+        line("  a = 1" + " + 1".repeat(length - 1) + " :");
+        line("  b = 1" + " * 1".repeat(length - 1) + " :");
+        line("  IF {" + "a < b -> ".repeat(length - 1) + "0 < a} THEN OUT(a): END:");
+        line("  OUT(b):");
+        line("END");
+    }
+
+    /**
+     * Writes small random programs reading two variables, computing with them and printing them all.
+     *
+     * @param programs The number of programs.
+     */
+    private void corpus(int programs) throws IOException {
+        for (int p = 0; p < programs; p++) {
+            line("LET P" + p + " BE");
+            line("  IN(a):");
+            line("  IN(b):");
+            for (String v : new String[]{"c", "d", "e"}) {
+                line("  " + v + " = " + random.nextInt(10) + ":");
+            }
+            code(4 + random.nextInt(8), 1);
+            for (String v : new String[]{"a", "b", "c", "d", "e"}) {
+                line("  OUT(" + v + "):");
+            }
+            line("END");
+        }
+    }
+
+    /**
+     * Writes random statements of a program of the corpus.
+     *
+     * @param statements The number of statements.
+     * @param depth The depth of nesting of the statements, from 1.
+     */
+    private void code(int statements, int depth) throws IOException {
+        String indent = "  ".repeat(depth);
+        for (int i = 0; i < statements; i++) {
+            int kind = depth > 2 ? 0 : random.nextInt(10);
+            String v = String.valueOf((char) ('a' + random.nextInt(5)));
+            if (kind < 5) {
+                line(indent + v + " = " + atom(0) + " " + "+-*/".charAt(random.nextInt(4)) + " " + atom(0) + ":");
+            } else if (kind < 7) {
+                line(indent + "IF {" + atom(0) + " " + comparison() + " " + atom(0) + "} THEN");
+                code(1 + random.nextInt(2), depth + 1);
+                if (kind == 6) {
+                    line(indent + "ELSE");
+                    code(1 + random.nextInt(2), depth + 1);
+                }
+                line(indent + "END:");
+            } else if (kind < 8) {
+                // Bounded loop, with a counter of its own so that the programs of the corpus terminate
+                String counter = "i" + depth;
+                line(indent + counter + " = 0:");
+                line(indent + "WHILE {" + counter + " < " + random.nextInt(4) + "} REPEAT");
+                code(1, depth + 1);
+                line(indent + "  " + counter + " = " + counter + " + 1:");
+                line(indent + "END:");
+            } else {
+                line(indent + "OUT(" + v + "):");
+            }
+        }
+    }
+
+    private String atom(int depth) {
+        int kind = depth > 1 ? random.nextInt(2) : random.nextInt(4);
+        return switch (kind) {
+            case 0 -> String.valueOf(random.nextInt(20));
+            case 1 -> String.valueOf((char) ('a' + random.nextInt(5)));
+            case 2 -> "(" + atom(depth + 1) + " - " + atom(depth + 1) + ")";
+            default -> "-" + atom(depth + 1);
+        };
+    }
+
+    private String comparison() {
+        return new String[]{"==", "<=", "<"}[random.nextInt(3)];
+    }
+
+    /**
+     * Writes comments of 200 to 3000 characters, each followed by an assignment.
+     *
+     * @param comments The number of comments.
+     */
+    private void comments(int comments) throws IOException {
+        line("LET Commented BE");
+        for (int i = 0; i < comments; i++) {
+            line("  !! " + commentText(200 + random.nextInt(2801)) + " !!");
+            line("  v" + i % 50 + " = v" + 7L * i % 50 + " + " + i % 7 + " : $ line comment");
+        }
+        line("END");
+    }
+
+    /**
+     * Writes a program made of one comment.
+     *
+     * @param length The number of characters in the comment.
+     */
+    private void longComment(int length) throws IOException {
+        line("LET Commented BE");
+        line("  !! " + commentText(length) + " !!");
+        line("  a = 1 :");
+        line("END");
+    }
+
+    /**
+     * Returns the text of a comment: words, lines and single exclamation marks, which cannot end the comment.
+     */
+    private String commentText(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                text.append('\n');
+            } else if (kind == 1) {
+                text.append("! ");
+            } else {
+                text.append("word").append(random.nextInt(100)).append(' ');
+            }
+        }
+        text.setLength(length);
+        if (text.charAt(length - 1) == '!') {
+            text.setCharAt(length - 1, '.');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a loop on an implication, running as many times as the number read, and printing how many times the
+     * implication held.
+     */
+    private void loop() throws IOException {
+        line("LET Loop BE");
+        line("  IN(n):");
+        line("  i = 0:");
+        line("  s = 0:");
+        line("  WHILE {i < n} REPEAT");
+        line("    IF {i < 10 -> |s == i -> 0 < i|} THEN s = s + 1: END:");
+        line("    i = i + 1:");
+        line("  END:");
+        line("  OUT(s):");
+        line("END");
+    }
+
+    /**
+     * Writes a program whose lexing fails after 3 + 4 N tokens, on a {@code #}. With N = 1023 the error comes on the
+     * first token of the second batch of the pipelined compiler, and with N = 8191 on the first token of a reused one.
+     *
+     * @param statements The number of assignments before the error.
+     */
+    private void badToken(int statements) throws IOException {
+        line("LET Bad BE");
+        for (int i = 0; i < statements; i++) {
+            line("  x = 1 :");
+        }
+        line("  x #");
+        line("END");
+    }
+}
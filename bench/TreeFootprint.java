@@ -0,0 +1,55 @@
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Measures the heap taken by the parse tree of programs: the heap used after a full collection while the tree is
+ * reachable, minus the heap used before parsing, per node of the tree.
+ *
+ * Only {@code new Parser(FileReader).parse()} and the getters of {@link ParseTree} are used, so that the same harness
+ * measures older builds too, whose trees are made of objects. The figures include the small baseline of the JVM
+ * between the two measures; run with a heap large enough for the tree.
+ *
+ * Usage: java TreeFootprint FILE...
+ */
+public class TreeFootprint {
+    public static void main(String[] args) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (String file : args) {
+            long before = usedAfterCollection(memory);
+            ParseTree tree = new Parser(new FileReader(file)).parse();
+            long nodes = countNodes(tree);
+            long used = usedAfterCollection(memory) - before;
+            System.out.printf(Locale.ROOT, "%-40s %10d nodes %10.1f MB %8.1f bytes/node%n", file, nodes,
+                    used / 1048576.0, (double) used / nodes);
+            Reference.reachabilityFence(tree);
+        }
+    }
+
+    private static long usedAfterCollection(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Counts the nodes of a tree, without recursion so that deep trees are counted too.
+     */
+    private static long countNodes(ParseTree root) {
+        long nodes = 0;
+        ArrayDeque<ParseTree> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            ParseTree node = pending.pop();
+            nodes++;
+            for (ParseTree child : node.getChildren()) {
+                pending.push(child);
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.List;
+
+/**
+ * An abstract syntax tree of a GILLES program, lowered from its {@link ParseTree} by {@link AstBuilder}.
+ *
+ * Only the structure of the program is kept: the keywords, the punctuation and the &epsilon; leaves are dropped, the
+ * chains of ExprArith' and Prod' become left-associative binary operations, the chains of Cond' become
+ * right-associative implications, and the parentheses and pipes only remain as the shape of the tree. The code
+ * generators switch on the node types, which are all records of this interface.
+ *
+ * Each variable is named together with its slot in the {@link SymbolTable} of the program, by which the code
+ * generators index what they keep about it.
+ */
+public sealed interface Ast {
+
+    /**
+     * A statement of a sequence.
+     */
+    sealed interface Statement extends Ast permits Assign, If, While, In, Out {
+    }
+
+    /**
+     * An arithmetic expression.
+     */
+    sealed interface Expr extends Ast permits BinOp, Neg, Num, Var {
+    }
+
+    /**
+     * A condition.
+     */
+    sealed interface Cond extends Ast permits Implies, Compare {
+    }
+
+    /**
+     * A whole program.
+     *
+     * @param name The name of the program.
+     * @param symbols The variables of the program, whose slots follow their order of first appearance.
+     * @param body The statements of the program.
+     */
+    record Program(String name, SymbolTable symbols, Seq body) implements Ast {
+        /**
+         * Returns the names of the variables of the program, by slot.
+         */
+        public List<String> variables() {
+            return symbols.getNames();
+        }
+    }
+
+    /**
+     * A sequence of statements, executed in order.
+     *
+     * @param statements The statements, which may be none.
+     */
+    record Seq(List<Statement> statements) implements Ast {
+    }
+
+    /**
+     * An assignment of the value of an expression to a variable.
+     *
+     * @param variable The name of the variable.
+     * @param slot The slot of the variable.
+     * @param value The expression.
+     */
+    record Assign(String variable, int slot, Expr value) implements Statement {
+    }
+
+    /**
+     * A conditional statement.
+     *
+     * @param cond The condition.
+     * @param then The statements executed when the condition is true.
+     * @param otherwise The statements executed when the condition is false, which are none without ELSE.
+     */
+    record If(Cond cond, Seq then, Seq otherwise) implements Statement {
+    }
+
+    /**
+     * A loop, executing its statements as long as its condition is true, which is checked before each execution.
+     *
+     * @param cond The condition.
+     * @param body The statements executed while the condition is true.
+     */
+    record While(Cond cond, Seq body) implements Statement {
+    }
+
+    /**
+     * A read of a number from the input into a variable.
+     *
+     * @param variable The name of the variable.
+     * @param slot The slot of the variable.
+     */
+    record In(String variable, int slot) implements Statement {
+    }
+
+    /**
+     * A print of the value of a variable on the output.
+     *
+     * @param variable The name of the variable.
+     * @param slot The slot of the variable.
+     */
+    record Out(String variable, int slot) implements Statement {
+    }
+
+    /**
+     * A binary arithmetic operation.
+     *
+     * @param operator The operator: PLUS, MINUS, TIMES or DIVIDE.
+     * @param left The left operand.
+     * @param right The right operand.
+     */
+    record BinOp(LexicalUnit operator, Expr left, Expr right) implements Expr {
+    }
+
+    /**
+     * A unary minus.
+     *
+     * @param operand The expression negated.
+     */
+    record Neg(Expr operand) implements Expr {
+    }
+
+    /**
+     * A number.
+     *
+     * @param value The value of the number.
+     */
+    record Num(int value) implements Expr {
+    }
+
+    /**
+     * The value of a variable.
+     *
+     * @param name The name of the variable.
+     * @param slot The slot of the variable.
+     */
+    record Var(String name, int slot) implements Expr {
+    }
+
+    /**
+     * An implication, true when its left-hand side is false or its right-hand side is true.
+     *
+     * @param left The left-hand side.
+     * @param right The right-hand side.
+     */
+    record Implies(Cond left, Cond right) implements Cond {
+    }
+
+    /**
+     * A comparison of two arithmetic expressions.
+     *
+     * @param comparison The comparison: EQUAL, SMALEQ or SMALLER.
+     * @param left The left operand.
+     * @param right The right operand.
+     */
+    record Compare(LexicalUnit comparison, Expr left, Expr right) implements Cond {
+    }
+}
@@ -0,0 +1,282 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lowers the parse tree of a program into its {@link Ast}, in one walk of the tree.
+ *
+ * The walk reads the arrays of the {@link CompactParseTree} directly, without making a view of each node, and the
+ * chains of ExprArith', Prod' and Cond' are followed with a loop rather than recursively. The variables are the ones
+ * of the {@link SymbolTable} of the tree, filled while parsing, each leaf of a variable holding its slot.
+ */
+public class AstBuilder {
+
+    private static final Ast.Seq EMPTY = new Ast.Seq(List.of());
+
+    private final CompactParseTree tree;
+
+    private AstBuilder(CompactParseTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Lowers the parse tree of a whole program. A parse tree which is not a view of a {@link CompactParseTree} is
+     * copied into one first.
+     *
+     * @param parseTree The parse tree of the program.
+     * @return The abstract syntax tree of the program.
+     * @throws RuntimeException If the parse tree is not the one of a GILLES program.
+     */
+    public static Ast.Program lower(ParseTree parseTree) {
+        if (parseTree instanceof CompactParseTree.View view) {
+            return lower(view.getTree(), view.getNode());
+        }
+        CompactParseTree tree = CompactParseTree.copyOf(parseTree);
+        return lower(tree, tree.getRoot());
+    }
+
+    /**
+     * Lowers the parse tree of a whole program.
+     *
+     * @param tree The parse tree.
+     * @param root The node of the program in the tree.
+     * @return The abstract syntax tree of the program.
+     * @throws RuntimeException If the parse tree is not the one of a GILLES program.
+     */
+    public static Ast.Program lower(CompactParseTree tree, int root) {
+        return new AstBuilder(tree).program(root);
+    }
+
+    /**
+     * Lowers the parse tree of one instruction, such as the trees given by {@link Parser#parseInstruction()}.
+     *
+     * @param tree The parse tree.
+     * @param node The node of the &lt;Instruction&gt; in the tree.
+     * @return The statement.
+     * @throws RuntimeException If the parse tree is not the one of a GILLES instruction.
+     */
+    public static Ast.Statement lowerInstruction(CompactParseTree tree, int node) {
+        return new AstBuilder(tree).instruction(node);
+    }
+
+    /**
+     * Returns a child of a node.
+     *
+     * @param node The node.
+     * @param index The index of the child, from 0.
+     * @return The child.
+     */
+    private int child(int node, int index) {
+        int child = tree.getFirstChild(node);
+        for (int i = 0; i < index; i++) {
+            child = tree.getNextSibling(child);
+        }
+        return child;
+    }
+
+    /**
+     * Returns whether a node derives &epsilon;.
+     *
+     * @param node The node of a variable.
+     * @return True if the node has no child other than &epsilon;.
+     */
+    private boolean isEpsilon(int node) {
+        int first = tree.getFirstChild(node);
+        return first == CompactParseTree.NONE || tree.getType(first) == LexicalUnit.EPSILON;
+    }
+
+    /**
+     * Lowers a program.
+     *
+     * @param node The node of the &lt;Program&gt;.
+     * @return The program.
+     */
+    private Ast.Program program(int node) {
+        // <Program> -> LET [ProgName] BE <Code> END
+        String name = tree.getValue(child(node, 1)).toString();
+        Ast.Seq body = code(child(node, 3));
+        return new Ast.Program(name, tree.getSymbols(), body);
+    }
+
+    /**
+     * Lowers a sequence of instructions.
+     *
+     * @param node The node of the &lt;Code&gt;, whose instructions are its children, each followed by a colon.
+     * @return The sequence, which is the shared empty one if the code derives &epsilon;.
+     */
+    private Ast.Seq code(int node) {
+        // <Code> -> <Instruction> : <Instruction> : ... | epsilon
+        List<Ast.Statement> statements = new ArrayList<>();
+        int instruction = tree.getFirstChild(node);
+        while (instruction != CompactParseTree.NONE && !tree.isTerminal(instruction)) {
+            int colon = tree.getNextSibling(instruction);
+            if (colon == CompactParseTree.NONE) {
+                break;
+            }
+            statements.add(instruction(instruction));
+            instruction = tree.getNextSibling(colon);
+        }
+        return statements.isEmpty() ? EMPTY : new Ast.Seq(statements);
+    }
+
+    /**
+     * Lowers an instruction.
+     *
+     * @param node The node of the &lt;Instruction&gt;.
+     * @return The statement.
+     * @throws RuntimeException If the instruction is of no known kind.
+     */
+    private Ast.Statement instruction(int node) {
+        // <Instruction> -> <Assign> | <If> | <While> | <Output> | <Input>
+        int statement = tree.getFirstChild(node);
+        NonTerminal variable = tree.getNonTerminal(statement);
+        return switch (variable) {
+            // <Assign> -> [VarName] = <ExprArith>
+            case Assign -> {
+                int target = child(statement, 0);
+                yield new Ast.Assign(name(target), tree.getSlot(target), exprArith(child(statement, 2)));
+            }
+            case If -> iF(statement);
+            // <While> -> WHILE { <Cond> } REPEAT <Code> END
+            case While -> new Ast.While(cond(child(statement, 2)), code(child(statement, 5)));
+            // <Output> -> OUT ( [VarName] )
+            case Output -> new Ast.Out(name(child(statement, 2)), tree.getSlot(child(statement, 2)));
+            // <Input> -> IN ( [VarName] )
+            case Input -> new Ast.In(name(child(statement, 2)), tree.getSlot(child(statement, 2)));
+            default -> throw new RuntimeException("Unknown Non-terminal Expression: " + variable);
+        };
+    }
+
+    /**
+     * Lowers a conditional, with or without ELSE.
+     *
+     * @param node The node of the &lt;If&gt;.
+     * @return The conditional, whose statements for a false condition are none without ELSE.
+     */
+    private Ast.If iF(int node) {
+        // <If> -> IF { <Cond> } THEN <Code> <IfTail>
+        Ast.Cond cond = cond(child(node, 2));
+        Ast.Seq then = code(child(node, 5));
+        // <IfTail> -> END | ELSE <Code> END
+        int tail = child(node, 6);
+        if (tree.getType(tree.getFirstChild(tail)) == LexicalUnit.ELSE) {
+            return new Ast.If(cond, then, code(child(tail, 1)));
+        }
+        return new Ast.If(cond, then, EMPTY);
+    }
+
+    /**
+     * Returns the name of a variable.
+     *
+     * @param node The VARNAME leaf.
+     * @return The name of the variable.
+     */
+    private String name(int node) {
+        return tree.getSymbols().getName(tree.getSlot(node));
+    }
+
+    /**
+     * Lowers a sum or difference, the terms of its chain of &lt;ExprArith'&gt; becoming left-associative operations.
+     *
+     * @param node The node of the &lt;ExprArith&gt;.
+     * @return The expression.
+     */
+    private Ast.Expr exprArith(int node) {
+        // <ExprArith> -> <Prod> <ExprArith'>
+        int prod = tree.getFirstChild(node);
+        Ast.Expr left = prod(prod);
+        int prime = tree.getNextSibling(prod);
+        while (!isEpsilon(prime)) {
+            // <ExprArith'> -> + <Prod> <ExprArith'> | - <Prod> <ExprArith'> | epsilon
+            int operator = tree.getFirstChild(prime);
+            int right = tree.getNextSibling(operator);
+            left = new Ast.BinOp(tree.getType(operator), left, prod(right));
+            prime = tree.getNextSibling(right);
+        }
+        return left;
+    }
+
+    /**
+     * Lowers a product or quotient, the factors of its chain of &lt;Prod'&gt; becoming left-associative operations.
+     *
+     * @param node The node of the &lt;Prod&gt;.
+     * @return The expression.
+     */
+    private Ast.Expr prod(int node) {
+        // <Prod> -> <Atom> <Prod'>
+        int atom = tree.getFirstChild(node);
+        Ast.Expr left = atom(atom);
+        int prime = tree.getNextSibling(atom);
+        while (!isEpsilon(prime)) {
+            // <Prod'> -> * <Atom> <Prod'> | / <Atom> <Prod'> | epsilon
+            int operator = tree.getFirstChild(prime);
+            int right = tree.getNextSibling(operator);
+            left = new Ast.BinOp(tree.getType(operator), left, atom(right));
+            prime = tree.getNextSibling(right);
+        }
+        return left;
+    }
+
+    /**
+     * Lowers an atom. A parenthesized expression becomes the expression itself.
+     *
+     * @param node The node of the &lt;Atom&gt;.
+     * @return The expression.
+     * @throws RuntimeException If the atom is of no known kind.
+     */
+    private Ast.Expr atom(int node) {
+        // <Atom> -> [Number] | [VarName] | ( <ExprArith> ) | - <Atom>
+        int first = tree.getFirstChild(node);
+        return switch (tree.getType(first)) {
+            case NUMBER -> new Ast.Num(Integer.parseInt(tree.getValue(first).toString()));
+            case VARNAME -> new Ast.Var(name(first), tree.getSlot(first));
+            case LPAREN -> exprArith(tree.getNextSibling(first));
+            case MINUS -> new Ast.Neg(atom(tree.getNextSibling(first)));
+            default -> throw new RuntimeException("Unknown atom: " + tree.getType(first));
+        };
+    }
+
+    /**
+     * Lowers a condition, the conditions of its chain of &lt;Cond'&gt; becoming right-associative implications.
+     *
+     * @param node The node of the &lt;Cond&gt;.
+     * @return The condition.
+     */
+    private Ast.Cond cond(int node) {
+        // <Cond> -> <SimpleCond> <Cond'>, <Cond'> -> -> <Cond> | epsilon
+        List<Ast.Cond> operands = new ArrayList<>();
+        while (true) {
+            int simpleCond = tree.getFirstChild(node);
+            operands.add(simpleCond(simpleCond));
+            int prime = tree.getNextSibling(simpleCond);
+            if (isEpsilon(prime)) {
+                break;
+            }
+            node = child(prime, 1);
+        }
+        // The implications are right-associative: the chain is folded from its end
+        Ast.Cond right = operands.get(operands.size() - 1);
+        for (int i = operands.size() - 2; i >= 0; i--) {
+            right = new Ast.Implies(operands.get(i), right);
+        }
+        return right;
+    }
+
+    /**
+     * Lowers a comparison, or a condition between pipes, which becomes the condition itself.
+     *
+     * @param node The node of the &lt;SimpleCond&gt;.
+     * @return The condition.
+     */
+    private Ast.Cond simpleCond(int node) {
+        // <SimpleCond> -> \| <Cond> \| | <ExprArith> <Comp> <ExprArith>
+        int first = tree.getFirstChild(node);
+        if (tree.getType(first) == LexicalUnit.PIPE) {
+            return cond(tree.getNextSibling(first));
+        }
+        int comp = tree.getNextSibling(first);
+        Ast.Expr left = exprArith(first);
+        // <Comp> -> == | <= | <
+        LexicalUnit comparison = tree.getType(tree.getFirstChild(comp));
+        return new Ast.Compare(comparison, left, exprArith(tree.getNextSibling(comp)));
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many GILLES files to LLVM code at once, in parallel.
+ *
+ * Every file is compiled by a task of its own on a work-stealing pool, with its own {@link Parser}, so that the tasks
+ * share nothing but the output directory and the {@link LLVMParser}, which keeps the state of each compilation apart.
+ * The errors are collected per file instead of stopping the batch.
+ */
+public class BatchCompiler {
+
+    /**
+     * Size (in characters) of the buffer through which each LLVM file is written.
+     */
+    private static final int LLVM_BUFFER_SIZE = 1 << 16;
+
+    private final Path outputDirectory;
+    private final LLVMParser generator;
+    private final int parallelism;
+
+    /**
+     * For each LLVM file written by the batch, the GILLES file it was generated from.
+     */
+    private final ConcurrentHashMap<String, Path> outputs = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a batch compiler.
+     *
+     * @param outputDirectory The directory in which the LLVM files are written.
+     * @param ssa Whether to generate the code in SSA form (see {@link LLVMParser#LLVMParser(boolean)}).
+     * @param parallelism The number of files compiled at the same time.
+     */
+    public BatchCompiler(Path outputDirectory, boolean ssa, int parallelism) {
+        this.outputDirectory = outputDirectory;
+        this.generator = new LLVMParser(ssa);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lists the GILLES files designated by the given inputs. An input is either a file, a directory whose .gls files
+     * are all taken (recursively), or a glob pattern such as {@code test/*.gls}.
+     *
+     * @param inputs The files, directories and patterns.
+     * @return The files, sorted and without duplicates.
+     * @throws IOException If a directory cannot be read.
+     * @throws IllegalArgumentException If an input designates no file.
+     */
+    public static List<Path> findSources(List<String> inputs) throws IOException {
+        TreeSet<Path> sources = new TreeSet<>();
+        for (String input : inputs) {
+            List<Path> found = List.of();
+            Path path = Paths.get(input);
+            if (Files.isRegularFile(path)) {
+                found = List.of(path);
+            } else if (Files.isDirectory(path)) {
+                found = walk(path, FileSystems.getDefault().getPathMatcher("glob:**.gls"));
+            } else {
+                // The pattern is matched against the files below its longest prefix without wildcard
+                int wildcard = 0;
+                while (wildcard < input.length() && "*?[{".indexOf(input.charAt(wildcard)) < 0) {
+                    wildcard++;
+                }
+                Path base = Paths.get(input.substring(0, wildcard)).getParent();
+                if (base == null) {
+                    base = Paths.get("");
+                }
+                if (Files.isDirectory(base)) {
+                    found = walk(base, FileSystems.getDefault().getPathMatcher("glob:" + input));
+                }
+            }
+            if (found.isEmpty()) {
+                throw new IllegalArgumentException("No GILLES file found for " + input);
+            }
+            sources.addAll(found);
+        }
+        return new ArrayList<>(sources);
+    }
+
+    /**
+     * Lists the regular files below a directory which match the given pattern.
+     *
+     * @param directory The directory to search.
+     * @param matcher The pattern of the files.
+     * @return The matching files.
+     * @throws IOException If a directory cannot be read.
+     */
+    private static List<Path> walk(Path directory, PathMatcher matcher) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> matcher.matches(file) && Files.isRegularFile(file)).toList();
+        }
+    }
+
+    /**
+     * Compiles the given files, waiting for all of them.
+     *
+     * @param sources The GILLES files to compile.
+     * @return The summary of the batch.
+     * @throws IOException If the output directory cannot be created.
+     * @throws InterruptedException If the thread is interrupted while waiting for the files.
+     */
+    public Summary compile(List<Path> sources) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newWorkStealingPool(parallelism);
+        try {
+            List<Callable<String>> tasks = new ArrayList<>(sources.size());
+            for (Path source : sources) {
+                tasks.add(() -> {
+                    try {
+                        compile(source);
+                        return null;
+                    } catch (Exception | StackOverflowError e) {
+                        return message(e);
+                    }
+                });
+            }
+            List<Future<String>> results = pool.invokeAll(tasks);
+            Map<Path, String> failures = new TreeMap<>();
+            for (int i = 0; i < sources.size(); i++) {
+                String failure;
+                try {
+                    failure = results.get(i).get();
+                } catch (ExecutionException e) {
+                    failure = message(e.getCause());
+                }
+                if (failure != null) {
+                    failures.put(sources.get(i), failure);
+                }
+            }
+            return new Summary(sources.size(), failures, System.nanoTime() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compiles one file.
+     *
+     * @param source The GILLES file to compile.
+     * @return The name of the generated LLVM file.
+     * @throws Exception If the file cannot be read, parsed, generated or written.
+     */
+    private String compile(Path source) throws Exception {
+        ParseTree parseTree = new Parser(source).parse();
+        String name = LLVMParser.outputFileName(parseTree);
+        Path previous = outputs.putIfAbsent(name, source);
+        if (previous != null) {
+            throw new IllegalStateException(name + " is already generated from " + previous);
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputDirectory.resolve(name).toFile()), LLVM_BUFFER_SIZE)) {
+            generator.generate(parseTree, writer);
+        }
+        return name;
+    }
+
+    /**
+     * Returns the message reported for a failed file, in the same form as for a single file.
+     *
+     * @param error The cause of the failure.
+     * @return The message of the failure.
+     */
+    private static String message(Throwable error) {
+        if (error instanceof ParseException || error instanceof IllegalStateException) {
+            return error.getMessage();
+        } else if (error instanceof StackOverflowError) {
+            return "Program too deeply nested";
+        }
+        return error.toString();
+    }
+
+    /**
+     * The outcome of a batch.
+     *
+     * @param files The number of files of the batch.
+     * @param failures For each file which could not be compiled, the reason why.
+     * @param nanos The duration of the batch, in nanoseconds.
+     */
+    public record Summary(int files, Map<Path, String> failures, long nanos) {
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            double seconds = nanos / 1e9;
+            result.append(String.format("Compiled %d files in %.3f s (%.1f files/s), %d failed%n",
+                    files, seconds, files / seconds, failures.size()));
+            for (Map.Entry<Path, String> failure : failures.entrySet()) {
+                result.append("Error:> ").append(failure.getKey()).append(": ").append(failure.getValue())
+                        .append(System.lineSeparator());
+            }
+            return result.toString();
+        }
+    }
+}
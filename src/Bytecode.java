@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * A GILLES program compiled for the {@link BytecodeInterpreter}.
+ *
+ * The code is a flat array of ints: each instruction is an opcode followed by its operands. Operands are either
+ * register numbers or, for jumps, the index in the code of the instruction to jump to. The registers hold the
+ * variables of the program first, then the constants used by the program, then the temporary values of the
+ * expressions.
+ *
+ * <pre>
+ * MOV d s        d = s
+ * ADD d a b      d = a + b       (also SUB, MUL, DIV)
+ * NEG d a        d = -a
+ * JMP t          jump to t
+ * JEQ a b t      jump to t if a == b (also JNE, JLT, JGE, JLE, JGT)
+ * IN d           read an integer into d
+ * OUT s          print s
+ * HALT           end of the program
+ * </pre>
+ */
+public final class Bytecode {
+    public static final int MOV = 0;
+    public static final int ADD = 1;
+    public static final int SUB = 2;
+    public static final int MUL = 3;
+    public static final int DIV = 4;
+    public static final int NEG = 5;
+    public static final int JMP = 6;
+    public static final int JEQ = 7;
+    public static final int JNE = 8;
+    public static final int JLT = 9;
+    public static final int JGE = 10;
+    public static final int JLE = 11;
+    public static final int JGT = 12;
+    public static final int IN = 13;
+    public static final int OUT = 14;
+    public static final int HALT = 15;
+
+    /**
+     * Number of ints taken by each instruction, opcode included.
+     */
+    static final int[] LENGTH = {3, 4, 4, 4, 4, 3, 2, 4, 4, 4, 4, 4, 4, 2, 2, 1};
+
+    /**
+     * Number of register operands following the opcode of each instruction.
+     */
+    static final int[] REGISTERS = {2, 3, 3, 3, 3, 2, 0, 2, 2, 2, 2, 2, 2, 1, 1, 0};
+
+    private final int[] code;
+    private final int[] registers;
+    private final String[] variables;
+
+    /**
+     * Creates a compiled program.
+     *
+     * @param code The instructions.
+     * @param registers The initial value of every register, holding the constants.
+     * @param variables The names of the variables, the variable i being in register i.
+     */
+    Bytecode(int[] code, int[] registers, String[] variables) {
+        this.code = code;
+        this.registers = registers;
+        this.variables = variables;
+    }
+
+    /**
+     * Returns the opcode of the conditional jump taken when the comparison is false.
+     *
+     * @param jump A conditional jump opcode.
+     * @return The opcode of the opposite jump.
+     */
+    static int negate(int jump) {
+        return switch (jump) {
+            case JEQ -> JNE;
+            case JNE -> JEQ;
+            case JLT -> JGE;
+            case JGE -> JLT;
+            case JLE -> JGT;
+            case JGT -> JLE;
+            default -> throw new IllegalArgumentException("Not a conditional jump: " + jump);
+        };
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    /**
+     * Returns a fresh copy of the registers in their state at the start of the program.
+     *
+     * @return The initial registers.
+     */
+    public int[] newRegisters() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    public String[] getVariables() {
+        return variables;
+    }
+}
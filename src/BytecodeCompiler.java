@@ -0,0 +1,265 @@
+import java.util.*;
+
+/**
+ * This class is responsible for compiling the parse tree into {@link Bytecode} for the {@link BytecodeInterpreter}.
+ * The parse tree is first lowered into its {@link Ast}, which is what is compiled.
+ *
+ * Every variable and every constant gets its own register. Expressions are computed in temporary registers, which
+ * are reused from one instruction to the next. Conditions are compiled into conditional jumps, the right-hand side
+ * of an implication being skipped when its left-hand side is false, and loops test their condition at the bottom
+ * so that each iteration takes a single jump.
+ *
+ * While compiling, temporary register t is written as -(t + 1) since the number of variables and constants is only
+ * known at the end. The operands are relocated once the whole program has been compiled.
+ */
+public class BytecodeCompiler {
+
+    private int[] code = new int[256];
+    private int size;
+
+    /**
+     * Start of the last instruction written, used to make it write directly into an assigned variable.
+     */
+    private int lastInstruction = -1;
+
+    /**
+     * The number of variables, whose registers are their slots in the symbol table of the program.
+     */
+    private int variableCount;
+    private final HashMap<Integer, Integer> constants = new HashMap<>();
+    private final List<Integer> constantValues = new ArrayList<>();
+    private int temporaries, maxTemporaries;
+
+    /**
+     * Compiles the parse tree of a whole program.
+     *
+     * @param parseTree The parse tree of the program.
+     * @return The compiled program.
+     * @throws RuntimeException If an unknown non-terminal expression is found.
+     */
+    public Bytecode compile(ParseTree parseTree) {
+        return compile(AstBuilder.lower(parseTree));
+    }
+
+    /**
+     * Compiles the abstract syntax tree of a whole program.
+     * Every variable gets the register of its slot, and the constants are numbered after all the variables.
+     *
+     * @param program The abstract syntax tree of the program.
+     * @return The compiled program.
+     */
+    public Bytecode compile(Ast.Program program) {
+        List<String> names = program.variables();
+        variableCount = names.size();
+        code(program.body());
+        emit(Bytecode.HALT);
+        int base = variableCount + constantValues.size();
+        for (int pc = 0; pc < size; pc += Bytecode.LENGTH[code[pc]]) {
+            for (int i = 1; i <= Bytecode.REGISTERS[code[pc]]; i++) {
+                if (code[pc + i] < 0) {
+                    code[pc + i] = base - code[pc + i] - 1;
+                }
+            }
+        }
+        int[] registers = new int[base + maxTemporaries];
+        for (int i = 0; i < constantValues.size(); i++) {
+            registers[variableCount + i] = constantValues.get(i);
+        }
+        return new Bytecode(Arrays.copyOf(code, size), registers, names.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the register holding the given constant, giving it one if needed.
+     *
+     * @param value The value of the constant.
+     * @return The register of the constant.
+     */
+    private int constant(int value) {
+        return constants.computeIfAbsent(value, v -> {
+            constantValues.add(v);
+            return variableCount + constantValues.size() - 1;
+        });
+    }
+
+    /**
+     * Returns a temporary register which is not used by the current instruction.
+     *
+     * @return The (not yet relocated) temporary register.
+     */
+    private int newTemporary() {
+        temporaries++;
+        maxTemporaries = Math.max(maxTemporaries, temporaries);
+        return -temporaries;
+    }
+
+    /**
+     * Writes an instruction.
+     *
+     * @param operation The opcode followed by the operands of the instruction.
+     */
+    private void emit(int... operation) {
+        if (size + operation.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + operation.length));
+        }
+        lastInstruction = size;
+        System.arraycopy(operation, 0, code, size, operation.length);
+        size += operation.length;
+    }
+
+    /**
+     * Sets the target of the given jumps to the current end of the code.
+     *
+     * @param jumps The positions of the jump targets to set.
+     */
+    private void patch(List<Integer> jumps) {
+        for (int jump : jumps) {
+            code[jump] = size;
+        }
+    }
+
+    private void code(Ast.Seq seq) {
+        for (Ast.Statement statement : seq.statements()) {
+            temporaries = 0;
+            switch (statement) {
+                case Ast.Assign assign -> assign(assign);
+                case Ast.If iF -> iF(iF);
+                case Ast.While whilE -> whilE(whilE);
+                case Ast.Out out -> emit(Bytecode.OUT, out.slot());
+                case Ast.In in -> emit(Bytecode.IN, in.slot());
+            }
+        }
+    }
+
+    private void assign(Ast.Assign node) {
+        int variable = node.slot();
+        int value = expression(node.value());
+        if (value < 0 && code[lastInstruction + 1] == value) {
+            // The value was just computed: compute it directly into the variable
+            code[lastInstruction + 1] = variable;
+        } else if (value != variable) {
+            emit(Bytecode.MOV, variable, value);
+        }
+    }
+
+    /**
+     * Writes the code computing an expression.
+     *
+     * @param expr The expression.
+     * @return The register holding the value of the expression.
+     */
+    private int expression(Ast.Expr expr) {
+        return switch (expr) {
+            case Ast.Num num -> constant(num.value());
+            case Ast.Var var -> var.slot();
+            case Ast.Neg neg -> negation(neg);
+            case Ast.BinOp binOp -> operation(binOp);
+        };
+    }
+
+    /**
+     * Writes a chain of binary arithmetic operations, reusing the temporary register of an operand for each result.
+     * The left operands are followed with a loop, a long sum or product being a deep chain of left operands.
+     *
+     * @param node The last operation of the chain.
+     * @return The register holding the result.
+     */
+    private int operation(Ast.BinOp node) {
+        ArrayDeque<Ast.BinOp> chain = new ArrayDeque<>();
+        Ast.Expr first = node;
+        while (first instanceof Ast.BinOp binOp) {
+            chain.push(binOp);
+            first = binOp.left();
+        }
+        int left = expression(first);
+        while (!chain.isEmpty()) {
+            Ast.BinOp binOp = chain.pop();
+            int right = expression(binOp.right());
+            int operator = switch (binOp.operator()) {
+                case PLUS -> Bytecode.ADD;
+                case MINUS -> Bytecode.SUB;
+                case TIMES -> Bytecode.MUL;
+                case DIVIDE -> Bytecode.DIV;
+                default -> throw new RuntimeException("Unknown arithmetic operator: " + binOp.operator());
+            };
+            int result = left < 0 ? left : right < 0 ? right : newTemporary();
+            emit(operator, result, left, right);
+            left = result;
+        }
+        return left;
+    }
+
+    private int negation(Ast.Neg node) {
+        if (node.operand() instanceof Ast.Num num) {
+            return constant(-num.value());
+        }
+        int value = expression(node.operand());
+        int result = value < 0 ? value : newTemporary();
+        emit(Bytecode.NEG, result, value);
+        return result;
+    }
+
+    private void iF(Ast.If node) {
+        List<Integer> toElse = new ArrayList<>();
+        jumpIf(node.cond(), false, toElse);
+        code(node.then());
+        if (!node.otherwise().statements().isEmpty()) {
+            emit(Bytecode.JMP, 0);
+            List<Integer> toEnd = List.of(size - 1);
+            patch(toElse);
+            code(node.otherwise());
+            patch(toEnd);
+        } else {
+            patch(toElse);
+        }
+    }
+
+    private void whilE(Ast.While node) {
+        emit(Bytecode.JMP, 0);
+        List<Integer> toCond = List.of(size - 1);
+        int body = size;
+        code(node.body());
+        patch(toCond);
+        temporaries = 0;
+        List<Integer> toBody = new ArrayList<>();
+        jumpIf(node.cond(), true, toBody);
+        for (int jump : toBody) {
+            code[jump] = body;
+        }
+    }
+
+    /**
+     * Writes the jumps taken when the given condition has the given truth value, the code following them being
+     * executed otherwise.
+     *
+     * @param cond The condition.
+     * @param when The truth value of the condition for which the jumps are taken.
+     * @param jumps The list to which the positions of the jump targets are added, to be patched by the caller.
+     */
+    private void jumpIf(Ast.Cond cond, boolean when, List<Integer> jumps) {
+        // The chain of implications is followed with a loop, the right-hand side of each being the next one
+        List<Integer> skip = new ArrayList<>();
+        while (cond instanceof Ast.Implies implies) {
+            if (when) {
+                // True when the left-hand side is false or the right-hand side is true
+                jumpIf(implies.left(), false, jumps);
+            } else {
+                // False when the left-hand side is true and the right-hand side is false
+                jumpIf(implies.left(), false, skip);
+            }
+            cond = implies.right();
+        }
+        Ast.Compare compare = (Ast.Compare) cond;
+        int left = expression(compare.left());
+        int right = expression(compare.right());
+        int comparison = switch (compare.comparison()) {
+            case EQUAL -> Bytecode.JEQ;
+            case SMALEQ -> Bytecode.JLE;
+            case SMALLER -> Bytecode.JLT;
+            default -> throw new RuntimeException("Unknown comparison: " + compare.comparison());
+        };
+        emit(when ? comparison : Bytecode.negate(comparison), left, right, 0);
+        jumps.add(size - 1);
+        temporaries = 0;
+        patch(skip);
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+
+/**
+ * Runs {@link Bytecode} programs, without going through LLVM.
+ */
+public class BytecodeInterpreter {
+
+    private final ProgramIO io;
+
+    /**
+     * Creates an interpreter.
+     *
+     * @param io The input and output of the programs.
+     */
+    public BytecodeInterpreter(ProgramIO io) {
+        this.io = io;
+    }
+
+    /**
+     * Runs a program until its end, flushing what it printed even if it fails.
+     *
+     * @param program The program to run.
+     * @return The registers at the end of the program, the variable i being in register i.
+     * @throws IOException If reading or printing fails.
+     * @throws ArithmeticException If the program divides by zero.
+     */
+    public int[] run(Bytecode program) throws IOException {
+        int[] code = program.getCode();
+        int[] r = program.newRegisters();
+        int pc = 0;
+        try {
+            while (true) {
+                switch (code[pc]) {
+                    case Bytecode.MOV -> {
+                        r[code[pc + 1]] = r[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.ADD -> {
+                        r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.SUB -> {
+                        r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.MUL -> {
+                        r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DIV -> {
+                        r[code[pc + 1]] = r[code[pc + 2]] / r[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.NEG -> {
+                        r[code[pc + 1]] = -r[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.JMP -> pc = code[pc + 1];
+                    case Bytecode.JEQ -> pc = r[code[pc + 1]] == r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.JNE -> pc = r[code[pc + 1]] != r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.JLT -> pc = r[code[pc + 1]] < r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.JGE -> pc = r[code[pc + 1]] >= r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.JLE -> pc = r[code[pc + 1]] <= r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.JGT -> pc = r[code[pc + 1]] > r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.IN -> {
+                        r[code[pc + 1]] = io.readInt();
+                        pc += 2;
+                    }
+                    case Bytecode.OUT -> {
+                        io.println(r[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Bytecode.HALT -> {
+                        return r;
+                    }
+                    default -> throw new RuntimeException("Unknown opcode " + code[pc] + " at " + pc);
+                }
+            }
+        } finally {
+            io.flush();
+        }
+    }
+}
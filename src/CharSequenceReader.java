@@ -0,0 +1,51 @@
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Objects;
+
+/**
+ * A Reader of a text in memory, such as a String, a StringBuilder or a CharBuffer, copying its characters in bulk
+ * when the text allows it. The text should not change while it is read.
+ */
+public class CharSequenceReader extends Reader {
+    private final CharSequence text;
+    private int position;
+
+    /**
+     * Creates a reader of the whole text.
+     *
+     * @param text the text to read.
+     */
+    public CharSequenceReader(CharSequence text) {
+        this.text = Objects.requireNonNull(text);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.length);
+        if (length == 0) {
+            return 0;
+        }
+        int count = Math.min(length, text.length() - position);
+        if (count <= 0) {
+            return -1;
+        }
+        if (text instanceof String string) {
+            string.getChars(position, position + count, buffer, offset);
+        } else if (text instanceof StringBuilder builder) {
+            builder.getChars(position, position + count, buffer, offset);
+        } else if (text instanceof CharBuffer chars) {
+            chars.get(chars.position() + position, buffer, offset, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = text.charAt(position + i);
+            }
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A minimal writer of JVM class files, with only what the {@link JvmCompiler} needs: a constant pool of strings,
+ * classes, methods and integers, and methods made of a Code attribute.
+ *
+ * The class files are written in version 49 (Java 5), which the JVM verifies by type inference: no StackMapTable
+ * has to be computed for the branches.
+ */
+public final class ClassFileWriter {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final HashMap<List<Object>, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final List<byte[]> methods = new ArrayList<>();
+
+    private final int thisClass;
+    private final int superClass;
+    private final int access;
+
+    /**
+     * Creates the writer of a class.
+     *
+     * @param access The access flags of the class.
+     * @param name The internal name of the class, such as {@code gilles/Euclid}.
+     * @param superName The internal name of its super class.
+     */
+    public ClassFileWriter(int access, String name, String superName) {
+        this.access = access;
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+    }
+
+    /**
+     * Returns the index of a constant pool entry, adding it if needed.
+     *
+     * @param tag The tag of the entry.
+     * @param first The first u2 (or the u4 of an integer) of the entry, or the string of an Utf8 entry.
+     * @param second The second u2 of the entry, or -1 if it has none.
+     * @return The index of the entry.
+     */
+    private int entry(int tag, Object first, Object second) {
+        List<Object> key = List.of(tag, first, second);
+        Integer index = poolIndexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(tag);
+            switch (tag) {
+                case CONSTANT_UTF8 -> poolOut.writeUTF((String) first);
+                case CONSTANT_INTEGER -> poolOut.writeInt((Integer) first);
+                default -> {
+                    poolOut.writeShort((Integer) first);
+                    if ((Integer) second >= 0) {
+                        poolOut.writeShort((Integer) second);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        poolIndexes.put(key, poolCount);
+        return poolCount++;
+    }
+
+    public int utf8(String value) {
+        return entry(CONSTANT_UTF8, value, -1);
+    }
+
+    public int integer(int value) {
+        return entry(CONSTANT_INTEGER, value, -1);
+    }
+
+    public int classRef(String name) {
+        return entry(CONSTANT_CLASS, utf8(name), -1);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        int nameAndType = entry(CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+        return entry(CONSTANT_METHODREF, classRef(owner), nameAndType);
+    }
+
+    /**
+     * Adds a method to the class.
+     *
+     * @param access The access flags of the method.
+     * @param name The name of the method.
+     * @param descriptor The descriptor of the method, such as {@code (LProgramIO;)V}.
+     * @param code The bytecode of the method.
+     * @param maxStack The maximum depth of the operand stack.
+     * @param maxLocals The number of local variable slots, the parameters included.
+     */
+    public void addMethod(int access, String name, String descriptor, byte[] code, int maxStack, int maxLocals) {
+        ByteArrayOutputStream method = new ByteArrayOutputStream(code.length + 32);
+        DataOutputStream out = new DataOutputStream(method);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // No exception table
+            out.writeShort(0); // No attribute
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(method.toByteArray());
+    }
+
+    /**
+     * Returns the class file.
+     *
+     * @return The bytes of the class file.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(pool.size() + 64);
+        DataOutputStream out = new DataOutputStream(result);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // No interface
+            out.writeShort(0); // No field
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // No attribute
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,534 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A parse tree stored as a structure of arrays, built by the {@link Parser}.
+ *
+ * A node is an index in parallel arrays holding its label, its first child, its next sibling, the position of its
+ * token, the line and the column being packed in one long, and the index of the value of its token in a side table,
+ * where each distinct name and number is kept once. The value of a VARNAME is its slot in the {@link SymbolTable} of
+ * the tree instead, which the Parser fills as it matches the variables. The keywords and punctuation always have the
+ * same text, kept once per lexical unit. A node of a finished tree thus takes 4 ints and a long, 20 bytes, plus 4
+ * bytes for its last child while the tree is built, instead of a {@link ParseTree}, a {@link Symbol} and a list of
+ * children, and the labels of the variables are the Symbols shared by all the trees.
+ *
+ * The tree is read through {@link #view(int)}, which gives a read-only {@link ParseTree} of a node whose labels and
+ * children are made on demand, so that the code generators and {@link ParseTree#toLaTeX()} work unchanged.
+ */
+public class CompactParseTree {
+    /**
+     * Index standing for no node, or no value.
+     */
+    public static final int NONE = -1;
+    /**
+     * Value index standing for the text of the lexical unit of the node, in {@link #unitTexts}.
+     */
+    private static final int UNIT_TEXT = -2;
+    /**
+     * Number of nodes below which the arrays are not trimmed by {@link #finish(int)}, copying them costing more than
+     * the room they would save.
+     */
+    private static final int TRIM_THRESHOLD = 1 << 12;
+
+    /**
+     * The label of each node: the ordinal of its lexical unit, or the complement ({@code ~}) of the ordinal of its
+     * variable.
+     */
+    private int[] labels;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    /**
+     * The last child of each node, to add children in constant time. Only needed while building the tree.
+     */
+    private int[] lastChildren;
+    /**
+     * The position of the token of each node: its line, as given by {@link Symbol#getLine()}, in the high half, and
+     * its column in the low half.
+     */
+    private long[] positions;
+    /**
+     * The index in {@link #valueTable} of the value of the token of each node, {@link #UNIT_TEXT} or {@link #NONE},
+     * or the slot in {@link #symbols} of a VARNAME.
+     */
+    private int[] values;
+    private int size;
+    private int root = NONE;
+
+    private final List<Object> valueTable = new ArrayList<>();
+    private final HashMap<Object, Integer> valueIndexes = new HashMap<>();
+    /**
+     * For each lexical unit other than the names and numbers, the text of its tokens.
+     */
+    private final Object[] unitTexts = new Object[LexicalUnit.values().length];
+    private final SymbolTable symbols = new SymbolTable();
+
+    private static final LexicalUnit[] TERMINALS = LexicalUnit.values();
+    private static final NonTerminal[] VARIABLES = NonTerminal.values();
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param capacity The number of nodes expected, the arrays growing as needed.
+     */
+    public CompactParseTree(int capacity) {
+        capacity = Math.max(capacity, 16);
+        labels = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        lastChildren = new int[capacity];
+        positions = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds a node without child.
+     */
+    private int add(int label, int line, int column, int value) {
+        if (size == labels.length) {
+            int capacity = 2 * size;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        labels[size] = label;
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        lastChildren[size] = NONE;
+        positions[size] = (long) line << 32 | (column & 0xFFFFFFFFL);
+        values[size] = value;
+        return size++;
+    }
+
+    /**
+     * Adds a leaf for a token.
+     *
+     * @param token The token.
+     * @return The node.
+     */
+    public int terminal(Symbol token) {
+        return terminal(token.getType(), token.getLine(), token.getColumn(), token.getValue());
+    }
+
+    /**
+     * Adds a leaf for a token of a {@link TokenBuffer}.
+     *
+     * @param tokens The buffer.
+     * @param token The index of the token in the buffer.
+     * @return The node.
+     */
+    public int terminal(TokenBuffer tokens, int token) {
+        return terminal(tokens.getType(token), tokens.getLine(token), tokens.getColumn(token),
+                tokens.getSymbolValue(token));
+    }
+
+    private int terminal(LexicalUnit type, int line, int column, Object tokenValue) {
+        if (type == LexicalUnit.VARNAME) {
+            return add(type.ordinal(), line, column, symbols.add((String) tokenValue));
+        }
+        int value = NONE;
+        boolean named = type == LexicalUnit.NUMBER || type == LexicalUnit.PROGNAME;
+        if (!named && tokenValue != null) {
+            if (unitTexts[type.ordinal()] == null) {
+                unitTexts[type.ordinal()] = tokenValue;
+            }
+            if (unitTexts[type.ordinal()].equals(tokenValue)) {
+                value = UNIT_TEXT;
+            }
+        }
+        if (value == NONE && tokenValue != null) {
+            Integer index = valueIndexes.get(tokenValue);
+            if (index == null) {
+                index = valueTable.size();
+                valueTable.add(tokenValue);
+                valueIndexes.put(tokenValue, index);
+            }
+            value = index;
+        }
+        return add(type.ordinal(), line, column, value);
+    }
+
+    /**
+     * Adds a leaf for a VARNAME of a {@link TokenBuffer} already in the symbol table.
+     *
+     * @param tokens The buffer.
+     * @param token The index of the token in the buffer.
+     * @param slot The slot of the variable in {@link #getSymbols()}.
+     * @return The node.
+     */
+    public int variable(TokenBuffer tokens, int token, int slot) {
+        return add(LexicalUnit.VARNAME.ordinal(), tokens.getLine(token), tokens.getColumn(token), slot);
+    }
+
+    /**
+     * Adds a leaf for &epsilon;.
+     *
+     * @return The node.
+     */
+    public int epsilon() {
+        return add(LexicalUnit.EPSILON.ordinal(), 0, -1, NONE);
+    }
+
+    /**
+     * Adds a node for a variable, whose children are added afterwards with {@link #addChild(int, int)}.
+     *
+     * @param variable The variable.
+     * @return The node.
+     */
+    public int nonTerminal(NonTerminal variable) {
+        return add(~variable.ordinal(), 0, -1, NONE);
+    }
+
+    /**
+     * Adds a node for a variable, with the given children.
+     *
+     * @param variable The variable.
+     * @param children The children of the node, in order.
+     * @return The node.
+     */
+    public int nonTerminal(NonTerminal variable, int... children) {
+        int node = nonTerminal(variable);
+        for (int child : children) {
+            addChild(node, child);
+        }
+        return node;
+    }
+
+    /**
+     * Adds a child after the other children of a node.
+     *
+     * @param parent The node.
+     * @param child The new child, which has no parent yet.
+     */
+    public void addChild(int parent, int child) {
+        if (lastChildren[parent] == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    /**
+     * Ends the building of the tree, releasing the room of the arrays which is not used by a large tree.
+     *
+     * @param root The root of the tree.
+     */
+    public void finish(int root) {
+        this.root = root;
+        lastChildren = null;
+        if (size < TRIM_THRESHOLD || size == labels.length) {
+            return;
+        }
+        labels = Arrays.copyOf(labels, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        positions = Arrays.copyOf(positions, size);
+        values = Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Removes all the nodes and values, keeping the arrays, to build another tree in their room. The symbol table is
+     * kept, so that the trees built one after the other share the slots of their variables.
+     */
+    public void clear() {
+        size = 0;
+        root = NONE;
+        if (lastChildren == null) {
+            lastChildren = new int[labels.length];
+        }
+        valueTable.clear();
+        valueIndexes.clear();
+    }
+
+    /**
+     * Returns the variables of the tree, and of the trees built before it in the same room.
+     *
+     * @return The symbol table.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isTerminal(int node) {
+        return labels[node] >= 0;
+    }
+
+    /**
+     * Returns the lexical unit of a leaf.
+     *
+     * @param node The node.
+     * @return The lexical unit, or null if the node is a variable.
+     */
+    public LexicalUnit getType(int node) {
+        return labels[node] >= 0 ? TERMINALS[labels[node]] : null;
+    }
+
+    /**
+     * Returns the variable of a node.
+     *
+     * @param node The node.
+     * @return The variable, or null if the node is a leaf.
+     */
+    public NonTerminal getNonTerminal(int node) {
+        return labels[node] < 0 ? VARIABLES[~labels[node]] : null;
+    }
+
+    public Object getValue(int node) {
+        if (labels[node] == LexicalUnit.VARNAME.ordinal()) {
+            return symbols.getName(values[node]);
+        }
+        return switch (values[node]) {
+            case NONE -> null;
+            case UNIT_TEXT -> unitTexts[labels[node]];
+            default -> valueTable.get(values[node]);
+        };
+    }
+
+    /**
+     * Returns the slot of the variable of a VARNAME leaf.
+     *
+     * @param node The node.
+     * @return The slot of the variable in {@link #getSymbols()}.
+     */
+    public int getSlot(int node) {
+        return values[node];
+    }
+
+    public int getLine(int node) {
+        return (int) (positions[node] >> 32);
+    }
+
+    public int getColumn(int node) {
+        return (int) positions[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * Returns the bytes taken by the arrays and the side table of values, without the values themselves.
+     *
+     * @return The size of the tree, in bytes.
+     */
+    public long footprint() {
+        long arrays = 4L * (16 + 4L * labels.length) + 16 + 8L * positions.length;
+        if (lastChildren != null) {
+            arrays += 16 + 4L * lastChildren.length;
+        }
+        // The side table is an array list and a hash map of (boxed) indexes, the symbol table three arrays and a map
+        return arrays + 8L * valueTable.size() + 48L * valueIndexes.size() + 64L * symbols.size();
+    }
+
+    /**
+     * Returns the label a node has as a {@link ParseTree}.
+     *
+     * @param node The node.
+     * @return The Symbol of the variable, or a new Symbol for a token.
+     */
+    public Symbol getLabel(int node) {
+        if (labels[node] < 0) {
+            return Symbol.of(VARIABLES[~labels[node]]);
+        }
+        // Symbol stores the line of the lexer plus one
+        return new Symbol(TERMINALS[labels[node]], getLine(node) - 1, getColumn(node), getValue(node));
+    }
+
+    /**
+     * Returns a read-only view of a subtree.
+     *
+     * @param node The root of the subtree.
+     * @return The view.
+     */
+    public ParseTree view(int node) {
+        return new View(node);
+    }
+
+    /**
+     * Copies a parse tree into arrays, registering its variables in order of appearance.
+     *
+     * @param parseTree The parse tree.
+     * @return The tree stored as arrays, rooted at the copy of the given tree.
+     */
+    public static CompactParseTree copyOf(ParseTree parseTree) {
+        CompactParseTree tree = new CompactParseTree(64);
+        tree.finish(parseTree.accept(tree.new Copier()));
+        return tree;
+    }
+
+    /**
+     * Copies the nodes of a parse tree into the arrays, returning the node of each copy.
+     */
+    private final class Copier implements ParseTreeVisitor<Integer> {
+        @Override
+        public Integer visitNonTerminal(NonTerminal variable, ParseTree node) {
+            int copy = nonTerminal(variable);
+            for (ParseTree child : node.getChildren()) {
+                int childCopy = child.accept(this);
+                addChild(copy, childCopy);
+                if (labels[childCopy] == LexicalUnit.VARNAME.ordinal()) {
+                    if (variable == NonTerminal.Assign || variable == NonTerminal.Input) {
+                        symbols.define(values[childCopy]);
+                    } else {
+                        symbols.use(values[childCopy]);
+                    }
+                }
+            }
+            return copy;
+        }
+
+        @Override
+        public Integer visitTerminal(LexicalUnit unit, Object value, ParseTree node) {
+            // The position of the token is only kept by the label
+            return terminal(node.getLabel());
+        }
+    }
+
+    /**
+     * A read-only {@link ParseTree} backed by the arrays. The views of its children are made on each access and kept
+     * by nobody, so that walking the tree does not rebuild it as objects.
+     */
+    final class View extends ParseTree {
+        private final int node;
+        private Symbol label;
+        private List<ParseTree> children;
+
+        private View(int node) {
+            this.node = node;
+        }
+
+        CompactParseTree getTree() {
+            return CompactParseTree.this;
+        }
+
+        int getNode() {
+            return node;
+        }
+
+        @Override
+        public Symbol getLabel() {
+            if (label == null) {
+                label = CompactParseTree.this.getLabel(node);
+            }
+            return label;
+        }
+
+        @Override
+        public <R> R accept(ParseTreeVisitor<R> visitor) {
+            // Dispatches from the arrays, without making the label
+            if (labels[node] >= 0) {
+                return visitor.visitTerminal(TERMINALS[labels[node]], getValue(node), this);
+            }
+            return visitor.visitNonTerminal(VARIABLES[~labels[node]], this);
+        }
+
+        @Override
+        public List<ParseTree> getChildren() {
+            if (children == null) {
+                children = new Children(node);
+            }
+            return children;
+        }
+    }
+
+    /**
+     * The children of a node, as views. The list walks the siblings from the last child it gave, so that reading the
+     * children in order takes constant time per child. The first access going backwards lists the children in an
+     * array, for the other orders.
+     */
+    private final class Children extends AbstractList<ParseTree> {
+        private final int parent;
+        private int size = NONE;
+        private int cursorIndex;
+        private int cursorNode;
+        private int[] nodes;
+
+        private Children(int parent) {
+            this.parent = parent;
+            this.cursorNode = firstChildren[parent];
+        }
+
+        @Override
+        public ParseTree get(int index) {
+            if (nodes == null && index < cursorIndex) {
+                nodes = new int[size()];
+                int i = 0;
+                for (int child = firstChildren[parent]; child != NONE; child = nextSiblings[child]) {
+                    nodes[i++] = child;
+                }
+            }
+            if (nodes != null) {
+                return new View(nodes[index]);
+            }
+            if (index < 0) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            while (cursorIndex < index && cursorNode != NONE) {
+                cursorNode = nextSiblings[cursorNode];
+                cursorIndex++;
+            }
+            if (cursorNode == NONE) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return new View(cursorNode);
+        }
+
+        @Override
+        public Iterator<ParseTree> iterator() {
+            return new Iterator<ParseTree>() {
+                private int next = firstChildren[parent];
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public ParseTree next() {
+                    if (next == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    ParseTree child = new View(next);
+                    next = nextSiblings[next];
+                    return child;
+                }
+            };
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstChildren[parent] == NONE;
+        }
+
+        @Override
+        public int size() {
+            if (size == NONE) {
+                size = 0;
+                for (int child = firstChildren[parent]; child != NONE; child = nextSiblings[child]) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A client of the {@link CompileServer}, keeping one connection open for any number of requests.
+ */
+public class CompileClient implements Closeable {
+
+    private final SocketChannel connection;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * The answer of the server to a request.
+     *
+     * @param success Whether the program was compiled.
+     * @param fileName The name of the LLVM file of the program, or null if it was not compiled.
+     * @param text The LLVM code, or the message of the error.
+     * @param warnings The warnings of the lexer, one per line, or an empty string if there are none.
+     */
+    public record Result(boolean success, String fileName, String text, String warnings) {
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param socket The path of the Unix domain socket of the server.
+     * @throws IOException If the server cannot be reached.
+     */
+    public CompileClient(Path socket) throws IOException {
+        connection = SocketChannel.open(StandardProtocolFamily.UNIX);
+        connection.connect(UnixDomainSocketAddress.of(socket));
+        in = new BufferedInputStream(Channels.newInputStream(connection));
+        out = new BufferedOutputStream(Channels.newOutputStream(connection));
+    }
+
+    /**
+     * Compiles a program given by its source.
+     *
+     * @param source The GILLES source of the program.
+     * @param ssa Whether to generate the code in SSA form.
+     * @return The answer of the server.
+     * @throws IOException If the connection fails.
+     */
+    public Result compileSource(String source, boolean ssa) throws IOException {
+        return request("SOURCE", source, ssa);
+    }
+
+    /**
+     * Compiles a program given by the path of its file, which is read by the server.
+     *
+     * @param path The GILLES file.
+     * @param ssa Whether to generate the code in SSA form.
+     * @return The answer of the server.
+     * @throws IOException If the connection fails.
+     */
+    public Result compilePath(Path path, boolean ssa) throws IOException {
+        return request("PATH", path.toAbsolutePath().toString(), ssa);
+    }
+
+    private Result request(String kind, String payload, boolean ssa) throws IOException {
+        CompileServer.writeFrame(out, kind + (ssa ? " ssa" : " -"), payload);
+        out.flush();
+        String warnings = "";
+        String[] fields = readHeader();
+        String text = readPayload(fields);
+        if (fields[0].equals("WARNING")) {
+            warnings = text;
+            fields = readHeader();
+            text = readPayload(fields);
+        }
+        if (fields[0].equals("OK")) {
+            return new Result(true, fields[1], text, warnings);
+        }
+        return new Result(false, null, text, warnings);
+    }
+
+    private String[] readHeader() throws IOException {
+        String header = CompileServer.readLine(in);
+        if (header == null) {
+            throw new EOFException("The server closed the connection");
+        }
+        return header.split(" ");
+    }
+
+    private String readPayload(String[] fields) throws IOException {
+        return new String(in.readNBytes(Integer.parseInt(fields[fields.length - 1])), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
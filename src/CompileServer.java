@@ -0,0 +1,215 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A resident compiler answering compile requests on a Unix domain socket, so that the JVM start and the warm-up of
+ * the parser and of the code generator are only paid once.
+ *
+ * Each connection is served by a virtual thread of its own and may send any number of requests, each compiled with a
+ * new {@link Parser}, the code being generated by the {@link LLVMParser} shared by all the requests. A request is a
+ * header line followed by a payload of the given number of bytes, in UTF-8:
+ *
+ * <pre>
+ * SOURCE &lt;flags&gt; &lt;length&gt;\n&lt;GILLES source&gt;
+ * PATH &lt;flags&gt; &lt;length&gt;\n&lt;path of a .gls file readable by the server&gt;
+ * </pre>
+ *
+ * where the flags are {@code ssa} to generate the code in SSA form, or {@code -}. The answer is either the
+ * generated LLVM code with the name of its file, or the message of the error which stopped the compilation:
+ *
+ * <pre>
+ * OK &lt;file name&gt; &lt;length&gt;\n&lt;LLVM code&gt;
+ * ERROR &lt;length&gt;\n&lt;message&gt;
+ * </pre>
+ *
+ * The warnings of the lexer, one per line, are sent before the answer when there are any:
+ *
+ * <pre>
+ * WARNING &lt;length&gt;\n&lt;warnings&gt;
+ * </pre>
+ */
+public class CompileServer {
+
+    private final Path socket;
+    private final LLVMParser allocaGenerator = new LLVMParser(false);
+    private final LLVMParser ssaGenerator = new LLVMParser(true);
+
+    /**
+     * Creates a server.
+     *
+     * @param socket The path of the Unix domain socket to listen on.
+     */
+    public CompileServer(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Compiles the given files several times, so that the JIT has compiled the lexer, the parser and the code
+     * generator before the first request. The results and errors are ignored.
+     *
+     * @param sources The GILLES files to compile.
+     * @param rounds The number of times each file is compiled.
+     */
+    public void warmUp(List<Path> sources, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (Path source : sources) {
+                try {
+                    compile(new Parser(source), round % 2 == 1);
+                } catch (Exception | StackOverflowError e) {
+                    // Invalid programs warm up the error paths
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves the requests until the process is stopped. A file left at the path of the socket by a previous server
+     * is replaced.
+     *
+     * @throws IOException If the socket cannot be opened.
+     */
+    public void serve() throws IOException {
+        Files.deleteIfExists(socket);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing more can be done when exiting
+                }
+            }));
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.submit(() -> handle(connection));
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of a connection until the client closes it.
+     *
+     * @param connection The connection of a client.
+     */
+    private void handle(SocketChannel connection) {
+        try (connection;
+             InputStream in = new BufferedInputStream(Channels.newInputStream(connection));
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(connection))) {
+            String header;
+            while ((header = readLine(in)) != null) {
+                String[] fields = header.split(" ");
+                if (fields.length != 3 || !(fields[0].equals("SOURCE") || fields[0].equals("PATH"))) {
+                    writeFrame(out, "ERROR", "Malformed request: " + header);
+                    return;
+                }
+                int length = parseLength(fields[2]);
+                if (length < 0) {
+                    writeFrame(out, "ERROR", "Malformed request: " + header);
+                    return;
+                }
+                String payload = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+                boolean ssa = fields[1].equals("ssa");
+                StringBuilder warnings = new StringBuilder();
+                String kind;
+                String answer;
+                try {
+                    LexicalAnalyzer lexer = new LexicalAnalyzer(fields[0].equals("SOURCE")
+                            ? new CharSequenceReader(payload) : new MappedFileReader(Paths.get(payload)));
+                    lexer.keepWarnings(warnings);
+                    String[] result = compile(new Parser(lexer, false), ssa);
+                    kind = "OK " + result[0];
+                    answer = result[1];
+                } catch (ParseException e) {
+                    kind = "ERROR";
+                    answer = e.getMessage();
+                } catch (Exception e) {
+                    kind = "ERROR";
+                    answer = e.toString();
+                } catch (StackOverflowError e) {
+                    kind = "ERROR";
+                    answer = "Program too deeply nested";
+                }
+                if (!warnings.isEmpty()) {
+                    writeFrame(out, "WARNING", warnings.toString());
+                }
+                writeFrame(out, kind, answer);
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The client is gone, or sent a request that cannot be read
+        }
+    }
+
+    /**
+     * Reads the length of the payload of a request.
+     *
+     * @param field The last field of the header.
+     * @return The length, or -1 if the field is not a length.
+     */
+    private static int parseLength(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Compiles a program.
+     *
+     * @param parser The parser of the GILLES source of the program.
+     * @param ssa Whether to generate the code in SSA form.
+     * @return The name of the LLVM file and the LLVM code.
+     * @throws IOException If the source cannot be read.
+     * @throws ParseException If the program is not a valid GILLES program.
+     */
+    private String[] compile(Parser parser, boolean ssa) throws IOException, ParseException {
+        ParseTree parseTree = parser.parse();
+        return (ssa ? ssaGenerator : allocaGenerator).generate(parseTree);
+    }
+
+    /**
+     * Reads a header line.
+     *
+     * @param in The stream to read from.
+     * @return The line without its newline, or null at the end of the stream.
+     * @throws IOException If reading fails.
+     */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(c);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a header line followed by its payload, whose length is appended to the header.
+     *
+     * @param out The stream to write to.
+     * @param header The header, without the length.
+     * @param payload The payload.
+     * @throws IOException If writing fails.
+     */
+    static void writeFrame(OutputStream out, String header, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.write((header + " " + bytes.length + "\n").getBytes(StandardCharsets.UTF_8));
+        out.write(bytes);
+    }
+}
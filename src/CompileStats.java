@@ -0,0 +1,300 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures of one compilation: the wall time and the bytes allocated by each phase, the number of tokens of each
+ * lexical unit, the number of nodes of each variable in the parse tree, and the number of LLVM instructions of each
+ * opcode in the main function.
+ *
+ * A phase is measured between {@link #begin(Phase)} and {@link #end(Phase)}, and a phase begun inside another one is
+ * not counted in the outer one: the lexer being called by the parser, its time is taken out of the parsing time. The
+ * phases are measured on the thread of the compilation, which is the only one to use the measures, so that the bytes
+ * allocated by the threads of the {@link ParallelLexer} are not counted, and its lexing time is the time the parser
+ * waits for it. The measures are read through the getters, or reported by {@link #toText()} and {@link #toJson()}.
+ */
+public class CompileStats {
+    /**
+     * A phase of a compilation.
+     */
+    public enum Phase {
+        LEXING("lexing"),
+        PARSING("parsing"),
+        TREE_OUTPUT("tree output"),
+        CODE_GENERATION("code generation");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the name of the phase in the reports.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+    private static final NonTerminal[] VARIABLES = NonTerminal.values();
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final long[] times = new long[PHASES.length];
+    private final long[] allocated = new long[PHASES.length];
+    private final long[] tokens = new long[UNITS.length];
+    private final long[] nodes = new long[VARIABLES.length];
+    private final TreeMap<String, Long> instructions = new TreeMap<>();
+    private long leaves;
+
+    /**
+     * The phases begun and not ended yet, the innermost first.
+     */
+    private final ArrayDeque<Phase> running = new ArrayDeque<>();
+    /**
+     * The time and the bytes allocated by the thread when the innermost running phase was last begun or resumed.
+     */
+    private long lastTime, lastAllocated;
+
+    /**
+     * Creates empty measures. The bytes allocated are only measured if the JVM is able to.
+     */
+    public CompileStats() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean allocating && allocating.isThreadAllocatedMemorySupported()
+                && allocating.isThreadAllocatedMemoryEnabled()) {
+            threads = allocating;
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * Begins a phase, pausing the phase it is begun in, if any.
+     *
+     * @param phase The phase.
+     */
+    public void begin(Phase phase) {
+        charge();
+        running.push(phase);
+    }
+
+    /**
+     * Ends a phase, resuming the phase it was begun in, if any.
+     *
+     * @param phase The phase, which has to be the last one begun.
+     * @throws IllegalStateException If the phase is not the last one begun.
+     */
+    public void end(Phase phase) {
+        if (running.peek() != phase) {
+            throw new IllegalStateException("Ending " + phase + " while in " + running.peek());
+        }
+        charge();
+        running.pop();
+    }
+
+    /**
+     * Adds the time and the bytes allocated since the last change of phase to the innermost running phase.
+     */
+    private void charge() {
+        long time = System.nanoTime();
+        long bytes = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+        Phase phase = running.peek();
+        if (phase != null) {
+            times[phase.ordinal()] += time - lastTime;
+            allocated[phase.ordinal()] += bytes - lastAllocated;
+        }
+        lastTime = time;
+        lastAllocated = bytes;
+    }
+
+    /**
+     * Returns a lexer recording the same tokens as the given one, whose filling is measured as the lexing phase and
+     * whose tokens are counted.
+     *
+     * @param source The lexer.
+     * @return The measured lexer.
+     */
+    public TokenSource measure(TokenSource source) {
+        return buffer -> {
+            int first = buffer.size();
+            begin(Phase.LEXING);
+            try {
+                source.fill(buffer);
+            } finally {
+                end(Phase.LEXING);
+                for (int token = first; token < buffer.size(); token++) {
+                    tokens[buffer.getType(token).ordinal()]++;
+                }
+            }
+        };
+    }
+
+    /**
+     * Counts the nodes of a parse tree.
+     *
+     * @param tree The tree.
+     */
+    public void countNodes(CompactParseTree tree) {
+        for (int node = 0; node < tree.size(); node++) {
+            NonTerminal variable = tree.getNonTerminal(node);
+            if (variable == null) {
+                leaves++;
+            } else {
+                nodes[variable.ordinal()]++;
+            }
+        }
+    }
+
+    /**
+     * Counts an LLVM instruction.
+     *
+     * @param opcode The opcode of the instruction, such as {@code add} or {@code br}.
+     */
+    public void countInstruction(String opcode) {
+        instructions.merge(opcode, 1L, Long::sum);
+    }
+
+    /**
+     * Returns the wall time of a phase.
+     *
+     * @param phase The phase.
+     * @return The time, in nanoseconds.
+     */
+    public long getTime(Phase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * Returns the bytes allocated by a phase on the thread of the compilation.
+     *
+     * @param phase The phase.
+     * @return The number of bytes, or -1 if the JVM does not measure them.
+     */
+    public long getAllocatedBytes(Phase phase) {
+        return threads == null ? -1 : allocated[phase.ordinal()];
+    }
+
+    public long getTokenCount(LexicalUnit unit) {
+        return tokens[unit.ordinal()];
+    }
+
+    public long getNodeCount(NonTerminal variable) {
+        return nodes[variable.ordinal()];
+    }
+
+    /**
+     * Returns the number of leaves of the parse tree, tokens and &epsilon;.
+     */
+    public long getLeafCount() {
+        return leaves;
+    }
+
+    /**
+     * Returns the number of LLVM instructions of each opcode.
+     *
+     * @return A read-only map from the opcodes, in alphabetical order, to their number.
+     */
+    public Map<String, Long> getInstructionCounts() {
+        return Collections.unmodifiableMap(instructions);
+    }
+
+    /**
+     * Returns the measures as a report for a reader.
+     *
+     * @return The report, on several lines.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-16s %12s %16s%n", "Phase", "Time (ms)", "Allocated (KB)"));
+        long totalTime = 0;
+        long totalAllocated = 0;
+        for (Phase phase : PHASES) {
+            totalTime += getTime(phase);
+            totalAllocated += getAllocatedBytes(phase);
+            text.append(phaseLine(phase.getLabel(), getTime(phase), getAllocatedBytes(phase)));
+        }
+        text.append(phaseLine("total", totalTime, threads == null ? -1 : totalAllocated));
+        long tokenCount = 0;
+        for (long count : tokens) {
+            tokenCount += count;
+        }
+        text.append(String.format(Locale.ROOT, "%nTokens: %d%n", tokenCount));
+        for (LexicalUnit unit : UNITS) {
+            if (tokens[unit.ordinal()] > 0) {
+                text.append(String.format(Locale.ROOT, "  %-16s %12d%n", unit.name(), tokens[unit.ordinal()]));
+            }
+        }
+        long nodeCount = leaves;
+        for (long count : nodes) {
+            nodeCount += count;
+        }
+        text.append(String.format(Locale.ROOT, "%nTree nodes: %d, of which %d leaves%n", nodeCount, leaves));
+        for (NonTerminal variable : VARIABLES) {
+            if (nodes[variable.ordinal()] > 0) {
+                text.append(String.format(Locale.ROOT, "  %-16s %12d%n", variable.name(), nodes[variable.ordinal()]));
+            }
+        }
+        long instructionCount = 0;
+        for (long count : instructions.values()) {
+            instructionCount += count;
+        }
+        text.append(String.format(Locale.ROOT, "%nLLVM instructions: %d%n", instructionCount));
+        for (Map.Entry<String, Long> instruction : instructions.entrySet()) {
+            text.append(String.format(Locale.ROOT, "  %-16s %12d%n", instruction.getKey(), instruction.getValue()));
+        }
+        return text.toString();
+    }
+
+    private static String phaseLine(String label, long time, long allocated) {
+        return String.format(Locale.ROOT, "%-16s %12.3f %16s%n", label, time / 1e6,
+                allocated < 0 ? "n/a" : String.valueOf(allocated / 1024));
+    }
+
+    /**
+     * Returns the measures as a JSON object, with the times in nanoseconds and the allocations in bytes (-1 if not
+     * measured), and the counts by lexical unit, variable and opcode without the zeros.
+     *
+     * @return The JSON object, on one line.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"phases\":{");
+        for (Phase phase : PHASES) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":{\"timeNanos\":")
+                    .append(getTime(phase)).append(",\"allocatedBytes\":").append(getAllocatedBytes(phase)).append('}');
+        }
+        json.append("},\"tokens\":{");
+        String separator = "";
+        for (LexicalUnit unit : UNITS) {
+            if (tokens[unit.ordinal()] > 0) {
+                json.append(separator).append('"').append(unit.name()).append("\":").append(tokens[unit.ordinal()]);
+                separator = ",";
+            }
+        }
+        json.append("},\"leaves\":").append(leaves).append(",\"nodes\":{");
+        separator = "";
+        for (NonTerminal variable : VARIABLES) {
+            if (nodes[variable.ordinal()] > 0) {
+                json.append(separator).append('"').append(variable.name()).append("\":").append(nodes[variable.ordinal()]);
+                separator = ",";
+            }
+        }
+        json.append("},\"instructions\":{");
+        separator = "";
+        // The opcodes are plain words, which need no escaping
+        for (Map.Entry<String, Long> instruction : instructions.entrySet()) {
+            json.append(separator).append('"').append(instruction.getKey()).append("\":").append(instruction.getValue());
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+}
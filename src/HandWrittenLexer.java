@@ -0,0 +1,446 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A lexer of GILLES written by hand, recording its tokens in a {@link TokenBuffer} as the {@link LexicalAnalyzer}
+ * generated by JFlex does.
+ *
+ * The tokens of GILLES are all made of ASCII characters, so rather than running a DFA on each character, the lexer
+ * switches on the first character of a token and reads the rest of it with a loop, a keyword being recognised by its
+ * length and its characters once the whole name has been read. It records the same tokens at the same positions and
+ * fails with the same errors as the generated lexer: the lines are counted with the same line terminators, and the
+ * comments, the numbers with leading zeros and the characters which start no token are handled as by the rules of
+ * LexicalAnalyzer.flex.
+ */
+public class HandWrittenLexer implements TokenSource {
+    /**
+     * Initial size (in characters) of the buffer of input, which grows to hold the longest token or comment line.
+     */
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Reader reader;
+    private char[] text;
+    /**
+     * Index in the text of the next character to lex.
+     */
+    private int position;
+    /**
+     * Index in the text after the last character read.
+     */
+    private int end;
+    /**
+     * Offset in the input of the first character of the text.
+     */
+    private int base;
+    private boolean atEnd;
+    private int line;
+    private int column;
+    /**
+     * Whether the last character counted is a carriage return, so that a line feed right after it is the same line end.
+     */
+    private boolean afterReturn;
+    /**
+     * Whether the text ends the input, rather than being followed by a part of it lexed by another lexer.
+     */
+    private final boolean last;
+    /**
+     * Whether the lexer is inside a long comment opened before the text.
+     */
+    private boolean inComment;
+    /**
+     * The warnings kept to be printed later, or null to print them as they are found.
+     */
+    private final StringBuilder warnings;
+
+    /**
+     * Creates a lexer of an input.
+     *
+     * @param reader the input.
+     */
+    public HandWrittenLexer(Reader reader) {
+        this.reader = reader;
+        this.text = new char[BUFFER_SIZE];
+        this.last = true;
+        this.warnings = null;
+    }
+
+    /**
+     * Creates a lexer of a part of a text in memory, which records the tokens of the part as the lexer of the whole
+     * text would. The part starts at the start of a line, so that no token but a long comment crosses its start or
+     * its end.
+     *
+     * If the part does not end the input, the lexer records no EOS token at its end, and a long comment left open
+     * there is not an error.
+     *
+     * @param text the text, which is read in place.
+     * @param start the index of the first character of the part, the first of the text or one following a line feed.
+     * @param end the index after the last character of the part, a line feed unless the part ends the input.
+     * @param last whether the part ends the input.
+     * @param line the line of the start of the part, from 0.
+     * @param inComment whether the part starts inside a long comment.
+     * @param warnings where to keep the warnings of the part rather than printing them.
+     */
+    public HandWrittenLexer(char[] text, int start, int end, boolean last, int line, boolean inComment,
+                            StringBuilder warnings) {
+        this.reader = null;
+        this.text = text;
+        this.position = start;
+        this.end = end;
+        this.atEnd = true;
+        this.last = last;
+        this.line = line;
+        this.inComment = inComment;
+        this.warnings = warnings;
+    }
+
+    @Override
+    public void fill(TokenBuffer buffer) throws IOException {
+        while (!buffer.isFull()) {
+            if (!token(buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the next token, skipping the spaces and comments before it.
+     *
+     * @param buffer the buffer to record the token in.
+     * @return false if the token is EOS.
+     * @throws IOException if reading the input fails.
+     * @throws PatternSyntaxException if a character starts no token or a comment is never closed.
+     */
+    private boolean token(TokenBuffer buffer) throws IOException {
+        while (true) {
+            if (inComment) {
+                inComment = false;
+                skipComment();
+            }
+            if (position == end && !more()) {
+                if (last) {
+                    buffer.add(LexicalUnit.EOS, base + position, line, column, TokenBuffer.NO_VALUE);
+                }
+                return false;
+            }
+            char c = text[position];
+            switch (c) {
+                case ' ', '\t' -> {
+                    position++;
+                    column++;
+                    afterReturn = false;
+                    continue;
+                }
+                case '\n', '\r', '\f' -> {
+                    count(1);
+                    continue;
+                }
+                case '!' -> {
+                    if (peek(1) != '!') {
+                        throw unmatched();
+                    }
+                    longComment();
+                    continue;
+                }
+                case '$' -> {
+                    shortComment();
+                    continue;
+                }
+                case ':' -> add(buffer, LexicalUnit.COLUMN, 1);
+                case '(' -> add(buffer, LexicalUnit.LPAREN, 1);
+                case ')' -> add(buffer, LexicalUnit.RPAREN, 1);
+                case '{' -> add(buffer, LexicalUnit.LBRACK, 1);
+                case '}' -> add(buffer, LexicalUnit.RBRACK, 1);
+                case '|' -> add(buffer, LexicalUnit.PIPE, 1);
+                case '+' -> add(buffer, LexicalUnit.PLUS, 1);
+                case '*' -> add(buffer, LexicalUnit.TIMES, 1);
+                case '/' -> add(buffer, LexicalUnit.DIVIDE, 1);
+                case '=' -> {
+                    if (peek(1) == '=') {
+                        add(buffer, LexicalUnit.EQUAL, 2);
+                    } else {
+                        add(buffer, LexicalUnit.ASSIGN, 1);
+                    }
+                }
+                case '-' -> {
+                    if (peek(1) == '>') {
+                        add(buffer, LexicalUnit.IMPLIES, 2);
+                    } else {
+                        add(buffer, LexicalUnit.MINUS, 1);
+                    }
+                }
+                case '<' -> {
+                    if (peek(1) == '=') {
+                        add(buffer, LexicalUnit.SMALEQ, 2);
+                    } else {
+                        add(buffer, LexicalUnit.SMALLER, 1);
+                    }
+                }
+                default -> {
+                    if (c >= 'a' && c <= 'z') {
+                        varName(buffer);
+                    } else if (c >= 'A' && c <= 'Z') {
+                        progName(buffer);
+                    } else if (c >= '0' && c <= '9') {
+                        number(buffer);
+                    } else {
+                        throw unmatched();
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records a token of a fixed text and moves past it.
+     */
+    private void add(TokenBuffer buffer, LexicalUnit unit, int length) {
+        add(buffer, unit, length, TokenBuffer.NO_VALUE);
+    }
+
+    private void add(TokenBuffer buffer, LexicalUnit unit, int length, int value) {
+        buffer.add(unit, base + position, line, column, value);
+        position += length;
+        column += length;
+        afterReturn = false;
+    }
+
+    /**
+     * VarName = [a-z][A-Za-z0-9]*
+     */
+    private void varName(TokenBuffer buffer) throws IOException {
+        int length = 1;
+        while (position + length < end || more()) {
+            char c = text[position + length];
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                length++;
+            } else {
+                break;
+            }
+        }
+        add(buffer, LexicalUnit.VARNAME, length, buffer.intern(text, position, length));
+    }
+
+    /**
+     * ProgName = [A-Z]([A-Za-z]|"_")*, unless the whole name is a keyword.
+     */
+    private void progName(TokenBuffer buffer) throws IOException {
+        int length = 1;
+        while (position + length < end || more()) {
+            char c = text[position + length];
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') {
+                length++;
+            } else {
+                break;
+            }
+        }
+        LexicalUnit keyword = keyword(length);
+        if (keyword != null) {
+            add(buffer, keyword, length);
+        } else {
+            add(buffer, LexicalUnit.PROGNAME, length, buffer.intern(text, position, length));
+        }
+    }
+
+    /**
+     * Returns the keyword at the current position, if the name there is one.
+     *
+     * @param length the length of the name.
+     * @return the keyword, or null if the name is not a keyword.
+     */
+    private LexicalUnit keyword(int length) {
+        return switch (length) {
+            case 2 -> is("BE") ? LexicalUnit.BE : is("IF") ? LexicalUnit.IF : is("IN") ? LexicalUnit.INPUT : null;
+            case 3 -> is("LET") ? LexicalUnit.LET : is("END") ? LexicalUnit.END : is("OUT") ? LexicalUnit.OUTPUT : null;
+            case 4 -> is("THEN") ? LexicalUnit.THEN : is("ELSE") ? LexicalUnit.ELSE : null;
+            case 5 -> is("WHILE") ? LexicalUnit.WHILE : null;
+            case 6 -> is("REPEAT") ? LexicalUnit.REPEAT : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns whether the text at the current position starts with a keyword.
+     */
+    private boolean is(String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (text[position + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * BadInteger = (0[0-9]+), Integer = ([1-9][0-9]*)|0
+     */
+    private void number(TokenBuffer buffer) throws IOException {
+        int length = 1;
+        while ((position + length < end || more()) && text[position + length] >= '0' && text[position + length] <= '9') {
+            length++;
+        }
+        if (text[position] == '0' && length > 1) {
+            String warning = "Warning! Numbers with leading zeros are deprecated: " + new String(text, position, length);
+            if (warnings == null) {
+                System.err.println(warning);
+            } else {
+                warnings.append(warning).append(System.lineSeparator());
+            }
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = text[position + i] - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                // Too large for an int: throws the NumberFormatException of Integer.valueOf
+                Integer.parseInt(new String(text, position, length));
+            }
+            value = 10 * value + digit;
+        }
+        add(buffer, LexicalUnit.NUMBER, length, value);
+    }
+
+    /**
+     * Skips a comment from "!!" to the next "!!", reading the input as it goes rather than keeping the comment.
+     *
+     * @throws PatternSyntaxException if the comment is never closed.
+     */
+    private void longComment() throws IOException {
+        count(2);
+        skipComment();
+    }
+
+    /**
+     * Skips the rest of a long comment, up to the "!!" which closes it, or to the end of a part not ending the input.
+     *
+     * @throws PatternSyntaxException if the comment is never closed.
+     */
+    private void skipComment() throws IOException {
+        while (true) {
+            while (position < end && text[position] != '!') {
+                count(1);
+            }
+            if (position == end) {
+                if (!more()) {
+                    if (!last) {
+                        return;
+                    }
+                    throw new PatternSyntaxException("A comment is never closed.", "", line);
+                }
+            } else if (peek(1) == '!') {
+                count(2);
+                return;
+            } else {
+                count(1);
+            }
+        }
+    }
+
+    /**
+     * Skips a comment from "$" to the end of the line, included: "$"{UpToEnd}.
+     *
+     * @throws PatternSyntaxException if the line has no end, the "$" then starting no token.
+     */
+    private void shortComment() throws IOException {
+        int length = 1;
+        int c;
+        while ((c = peek(length)) != '\n' && c != '\r') {
+            if (c < 0) {
+                throw unmatched();
+            }
+            length++;
+        }
+        // EndLine = ({LineFeed}{CarriageReturn}?) | ({CarriageReturn}{LineFeed}?)
+        int next = peek(length + 1);
+        length += (c == '\n' && next == '\r') || (c == '\r' && next == '\n') ? 2 : 1;
+        count(length);
+    }
+
+    /**
+     * Returns the error for the character at the current position, which starts no token.
+     */
+    private PatternSyntaxException unmatched() throws IOException {
+        int length = Character.isHighSurrogate(text[position]) && Character.isLowSurrogate((char) peek(1)) ? 2 : 1;
+        return new PatternSyntaxException("Unmatched token, out of symbols", new String(text, position, length), line);
+    }
+
+    /**
+     * Moves past characters, counting the lines and columns as the generated lexer does.
+     *
+     * @param length the number of characters, which have been read.
+     */
+    private void count(int length) {
+        for (int i = 0; i < length; i++) {
+            switch (text[position]) {
+                case '\u000B', '\u000C', '\u0085', '\u2028', '\u2029' -> {
+                    line++;
+                    column = 0;
+                    afterReturn = false;
+                }
+                case '\r' -> {
+                    line++;
+                    column = 0;
+                    afterReturn = true;
+                }
+                case '\n' -> {
+                    if (!afterReturn) {
+                        line++;
+                        column = 0;
+                    }
+                    afterReturn = false;
+                }
+                default -> {
+                    column++;
+                    afterReturn = false;
+                }
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Returns a character after the current position, reading more of the input if needed.
+     *
+     * @param index the index of the character from the current position.
+     * @return the character, or -1 if the input ends before it.
+     */
+    private int peek(int index) throws IOException {
+        while (position + index >= end) {
+            if (!more()) {
+                return -1;
+            }
+        }
+        return text[position + index];
+    }
+
+    /**
+     * Reads more of the input, keeping the characters from the current position.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean more() throws IOException {
+        if (atEnd) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(text, position, text, 0, end - position);
+            base += position;
+            end -= position;
+            position = 0;
+        }
+        if (end == text.length) {
+            text = Arrays.copyOf(text, 2 * text.length);
+        }
+        int read = reader.read(text, end, text.length - end);
+        if (read == 0) {
+            throw new IOException("Reader returned 0 characters");
+        }
+        if (read < 0) {
+            atEnd = true;
+            return false;
+        }
+        end += read;
+        return true;
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+
+/**
+ * This class is responsible for compiling the parse tree into a JVM class, so that the program is run (and
+ * JIT-compiled) by the JVM itself. The parse tree is first lowered into its {@link Ast}, which is what is compiled.
+ *
+ * The program becomes the static method {@code run(ProgramIO)} of the class {@code gilles.<ProgName>}. Its variables
+ * are the local variables of the method, and expressions are computed on the operand stack. Conditions are compiled
+ * into conditional jumps, the right-hand side of an implication being skipped when its left-hand side is false, and
+ * loops test their condition at the bottom. IN and OUT call the {@link ProgramIO} given to the method.
+ *
+ * A JVM method is limited to 64KB of bytecode, with branches of at most 32KB: larger programs cannot be compiled
+ * and have to be run with the {@link BytecodeInterpreter}.
+ */
+public class JvmCompiler {
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ILOAD_0 = 0x1a;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ISTORE = 0x36;
+    private static final int ISTORE_0 = 0x3b;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6c;
+    private static final int INEG = 0x74;
+    private static final int IF_ICMPEQ = 0x9f;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int IF_ICMPGT = 0xa3;
+    private static final int IF_ICMPLE = 0xa4;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int WIDE = 0xc4;
+
+    private static final String IO_CLASS = "ProgramIO";
+
+    private ClassFileWriter classFile;
+    private String className;
+
+    private byte[] code = new byte[1024];
+    private int size;
+    private int stack, maxStack;
+
+    /**
+     * The number of variables, whose local variable slots follow their slots in the symbol table of the program.
+     * Local 0 holds the ProgramIO.
+     */
+    private int variableCount;
+
+    /**
+     * Compiles the parse tree of a whole program into a class file.
+     *
+     * @param parseTree The parse tree of the program.
+     * @return The bytes of the class file.
+     * @throws IllegalArgumentException If the program is too large for a JVM method.
+     * @throws RuntimeException If an unknown non-terminal expression is found.
+     */
+    public byte[] compile(ParseTree parseTree) {
+        return compile(AstBuilder.lower(parseTree));
+    }
+
+    /**
+     * Compiles the abstract syntax tree of a whole program into a class file.
+     *
+     * @param program The abstract syntax tree of the program.
+     * @return The bytes of the class file.
+     * @throws IllegalArgumentException If the program is too large for a JVM method.
+     */
+    public byte[] compile(Ast.Program program) {
+        className = "gilles.".concat(program.name());
+        classFile = new ClassFileWriter(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER,
+                className.replace('.', '/'), "java/lang/Object");
+        variableCount = program.symbols().size();
+        // Variables read before being assigned are 0
+        for (int slot = 0; slot < variableCount; slot++) {
+            op(ICONST_0, 1);
+            local(ISTORE_0, ISTORE, local(slot), -1);
+        }
+        code(program.body());
+        op(RETURN, 0);
+        if (size > 0xFFFF) {
+            throw new IllegalArgumentException("Program too large for a JVM method: " + size + " bytes of bytecode");
+        }
+        ClassFileWriter result = classFile;
+        result.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "run", "(L" + IO_CLASS + ";)V",
+                Arrays.copyOf(code, size), maxStack, variableCount + 1);
+        return result.toByteArray();
+    }
+
+    /**
+     * Returns the binary name of the last compiled class.
+     *
+     * @return The name of the class, such as {@code gilles.Euclid}.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Loads a compiled class in a class loader of its own, and runs its program until its end.
+     *
+     * @param className The binary name of the class.
+     * @param bytes The class file.
+     * @param io The input and output of the program.
+     * @throws IOException If reading or printing fails.
+     * @throws ArithmeticException If the program divides by zero.
+     */
+    public static void run(String className, byte[] bytes, ProgramIO io) throws IOException {
+        Class<?> program = new ProgramClassLoader(JvmCompiler.class.getClassLoader()).define(className, bytes);
+        try {
+            program.getMethod("run", ProgramIO.class).invoke(null, io);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        } finally {
+            io.flush();
+        }
+    }
+
+    /**
+     * The class loader defining the compiled classes. The classes they use are taken from its parent.
+     */
+    private static final class ProgramClassLoader extends ClassLoader {
+        ProgramClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes one byte of bytecode.
+     *
+     * @param value The byte to write.
+     */
+    private void u1(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[size++] = (byte) value;
+    }
+
+    /**
+     * Writes two bytes of bytecode.
+     *
+     * @param value The big-endian u2 to write.
+     */
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    /**
+     * Writes an instruction, keeping track of the depth of the operand stack.
+     *
+     * @param opcode The opcode of the instruction.
+     * @param stackChange The change in the depth of the operand stack caused by the instruction.
+     */
+    private void op(int opcode, int stackChange) {
+        u1(opcode);
+        stack += stackChange;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    /**
+     * Writes a jump whose target is set later by {@link #patch(List)}.
+     *
+     * @param opcode The opcode of the jump.
+     * @param stackChange The change in the depth of the operand stack caused by the jump.
+     * @param jumps The list to which the position of the jump is added.
+     */
+    private void jump(int opcode, int stackChange, List<Integer> jumps) {
+        jumps.add(size);
+        op(opcode, stackChange);
+        u2(0);
+    }
+
+    /**
+     * Sets the target of the given jumps to the current end of the code.
+     *
+     * @param jumps The positions of the jumps to set.
+     */
+    private void patch(List<Integer> jumps) {
+        patch(jumps, size);
+    }
+
+    /**
+     * Sets the target of the given jumps.
+     *
+     * @param jumps The positions of the jumps to set.
+     * @param target The position to jump to.
+     * @throws IllegalArgumentException If a jump is too long for a 16-bit offset.
+     */
+    private void patch(List<Integer> jumps, int target) {
+        for (int jump : jumps) {
+            int offset = target - jump;
+            if (offset != (short) offset) {
+                throw new IllegalArgumentException("Program too large for a JVM method: a branch spans " + offset + " bytes");
+            }
+            code[jump + 1] = (byte) (offset >> 8);
+            code[jump + 2] = (byte) offset;
+        }
+    }
+
+    /**
+     * Writes the instruction pushing a constant.
+     *
+     * @param value The constant to push.
+     */
+    private void pushConstant(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value == (byte) value) {
+            op(BIPUSH, 1);
+            u1(value);
+        } else if (value == (short) value) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            int index = classFile.integer(value);
+            if (index < 256) {
+                op(LDC, 1);
+                u1(index);
+            } else {
+                op(LDC_W, 1);
+                u2(index);
+            }
+        }
+    }
+
+    /**
+     * Returns the local variable slot of a variable of the program.
+     *
+     * @param slot The slot of the variable in the symbol table.
+     * @return The local variable slot, after the one of the ProgramIO.
+     */
+    private static int local(int slot) {
+        return slot + 1;
+    }
+
+    /**
+     * Writes the instruction loading or storing a local variable.
+     *
+     * @param shortForm The opcode of the form for slot 0, the forms for slots 1 to 3 following it.
+     * @param longForm The opcode of the form with the slot as operand.
+     * @param slot The local variable slot.
+     * @param stackChange The change in the depth of the operand stack caused by the instruction.
+     */
+    private void local(int shortForm, int longForm, int slot, int stackChange) {
+        if (slot <= 3) {
+            op(shortForm + slot, stackChange);
+        } else if (slot < 256) {
+            op(longForm, stackChange);
+            u1(slot);
+        } else {
+            u1(WIDE);
+            op(longForm, stackChange);
+            u2(slot);
+        }
+    }
+
+    private void code(Ast.Seq seq) {
+        for (Ast.Statement statement : seq.statements()) {
+            switch (statement) {
+                case Ast.Assign assign -> {
+                    expression(assign.value());
+                    local(ISTORE_0, ISTORE, local(assign.slot()), -1);
+                }
+                case Ast.If iF -> iF(iF);
+                case Ast.While whilE -> whilE(whilE);
+                case Ast.Out out -> output(out);
+                case Ast.In in -> input(in);
+            }
+        }
+    }
+
+    /**
+     * Writes the code pushing the value of an expression.
+     *
+     * @param expr The expression.
+     */
+    private void expression(Ast.Expr expr) {
+        switch (expr) {
+            case Ast.Num num -> pushConstant(num.value());
+            case Ast.Var var -> local(ILOAD_0, ILOAD, local(var.slot()), 1);
+            case Ast.Neg neg -> {
+                if (neg.operand() instanceof Ast.Num num) {
+                    pushConstant(-num.value());
+                } else {
+                    expression(neg.operand());
+                    op(INEG, 0);
+                }
+            }
+            case Ast.BinOp binOp -> operation(binOp);
+        }
+    }
+
+    /**
+     * Writes the code pushing the value of a chain of binary operations.
+     * The left operands are followed with a loop, a long sum or product being a deep chain of left operands.
+     *
+     * @param node The last operation of the chain.
+     */
+    private void operation(Ast.BinOp node) {
+        ArrayDeque<Ast.BinOp> chain = new ArrayDeque<>();
+        Ast.Expr first = node;
+        while (first instanceof Ast.BinOp binOp) {
+            chain.push(binOp);
+            first = binOp.left();
+        }
+        expression(first);
+        while (!chain.isEmpty()) {
+            Ast.BinOp binOp = chain.pop();
+            expression(binOp.right());
+            op(switch (binOp.operator()) {
+                case PLUS -> IADD;
+                case MINUS -> ISUB;
+                case TIMES -> IMUL;
+                case DIVIDE -> IDIV;
+                default -> throw new RuntimeException("Unknown arithmetic operator: " + binOp.operator());
+            }, -1);
+        }
+    }
+
+    private void iF(Ast.If node) {
+        List<Integer> toElse = new ArrayList<>();
+        jumpIf(node.cond(), false, toElse);
+        code(node.then());
+        if (!node.otherwise().statements().isEmpty()) {
+            List<Integer> toEnd = new ArrayList<>();
+            jump(GOTO, 0, toEnd);
+            patch(toElse);
+            code(node.otherwise());
+            patch(toEnd);
+        } else {
+            patch(toElse);
+        }
+    }
+
+    private void whilE(Ast.While node) {
+        List<Integer> toCond = new ArrayList<>();
+        jump(GOTO, 0, toCond);
+        int body = size;
+        code(node.body());
+        patch(toCond);
+        List<Integer> toBody = new ArrayList<>();
+        jumpIf(node.cond(), true, toBody);
+        patch(toBody, body);
+    }
+
+    /**
+     * Writes the jumps taken when the given condition has the given truth value, the code following them being
+     * executed otherwise.
+     *
+     * @param cond The condition.
+     * @param when The truth value of the condition for which the jumps are taken.
+     * @param jumps The list to which the positions of the jumps are added, to be patched by the caller.
+     */
+    private void jumpIf(Ast.Cond cond, boolean when, List<Integer> jumps) {
+        // The chain of implications is followed with a loop, the right-hand side of each being the next one
+        List<Integer> skip = new ArrayList<>();
+        while (cond instanceof Ast.Implies implies) {
+            if (when) {
+                // True when the left-hand side is false or the right-hand side is true
+                jumpIf(implies.left(), false, jumps);
+            } else {
+                // False when the left-hand side is true and the right-hand side is false
+                jumpIf(implies.left(), false, skip);
+            }
+            cond = implies.right();
+        }
+        Ast.Compare compare = (Ast.Compare) cond;
+        expression(compare.left());
+        expression(compare.right());
+        int comparison = switch (compare.comparison()) {
+            case EQUAL -> IF_ICMPEQ;
+            case SMALEQ -> IF_ICMPLE;
+            case SMALLER -> IF_ICMPLT;
+            default -> throw new RuntimeException("Unknown comparison: " + compare.comparison());
+        };
+        jump(when ? comparison : negate(comparison), -2, jumps);
+        patch(skip);
+    }
+
+    /**
+     * Returns the opcode of the conditional jump taken when the comparison is false.
+     *
+     * @param jump An if_icmp opcode.
+     * @return The opcode of the opposite jump.
+     */
+    private static int negate(int jump) {
+        return switch (jump) {
+            case IF_ICMPEQ -> IF_ICMPNE;
+            case IF_ICMPNE -> IF_ICMPEQ;
+            case IF_ICMPLT -> IF_ICMPGE;
+            case IF_ICMPGE -> IF_ICMPLT;
+            case IF_ICMPLE -> IF_ICMPGT;
+            case IF_ICMPGT -> IF_ICMPLE;
+            default -> throw new IllegalArgumentException("Not a comparison: " + jump);
+        };
+    }
+
+    private void output(Ast.Out node) {
+        op(ALOAD_0, 1);
+        local(ILOAD_0, ILOAD, local(node.slot()), 1);
+        op(INVOKEVIRTUAL, -2);
+        u2(classFile.methodRef(IO_CLASS, "println", "(I)V"));
+    }
+
+    private void input(Ast.In node) {
+        op(ALOAD_0, 1);
+        op(INVOKEVIRTUAL, 0);
+        u2(classFile.methodRef(IO_CLASS, "readInt", "()I"));
+        local(ISTORE_0, ISTORE, local(node.slot()), -1);
+    }
+}
@@ -0,0 +1,236 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * The LL(1) action table of the GILLES grammar, used by the table-driven engine of the {@link Parser}.
+ *
+ * The table is computed once, from the FIRST and FOLLOW sets of the 35 rules below, and is indexed by
+ * {@code NonTerminal.ordinal()} &times; {@code LexicalUnit.ordinal()}. The right-hand sides are encoded as ints:
+ * a terminal by its ordinal, a variable by the complement ({@code ~}) of its ordinal.
+ */
+public final class LL1Table {
+
+    /**
+     * A rule of the grammar.
+     *
+     * @param number The number of the rule, as displayed by the parser.
+     * @param lhs The variable on the left-hand side.
+     * @param text The right-hand side, as displayed by the parser.
+     * @param rhs The symbols of the right-hand side, encoded as ints; empty for &epsilon;.
+     */
+    public record Rule(int number, NonTerminal lhs, String text, int[] rhs) {
+    }
+
+    /**
+     * The rules of the grammar, the rule number n being at index n - 1.
+     */
+    public static final Rule[] RULES = {
+        rule(1, NonTerminal.Program, "LET [ProgName] BE <Code> END",
+                LexicalUnit.LET, LexicalUnit.PROGNAME, LexicalUnit.BE, NonTerminal.Code, LexicalUnit.END),
+        rule(2, NonTerminal.Code, "<Instruction>:<Code>", NonTerminal.Instruction, LexicalUnit.COLUMN, NonTerminal.Code),
+        rule(3, NonTerminal.Code, "ɛ"),
+        rule(4, NonTerminal.Instruction, "<Assign>", NonTerminal.Assign),
+        rule(5, NonTerminal.Instruction, "<If>", NonTerminal.If),
+        rule(6, NonTerminal.Instruction, "<While>", NonTerminal.While),
+        rule(7, NonTerminal.Instruction, "<Output>", NonTerminal.Output),
+        rule(8, NonTerminal.Instruction, "<Input>", NonTerminal.Input),
+        rule(9, NonTerminal.Assign, "[Varname] = <ExprArith>", LexicalUnit.VARNAME, LexicalUnit.ASSIGN, NonTerminal.ExprArith),
+        rule(10, NonTerminal.ExprArith, "<Prod> <ExprArith'>", NonTerminal.Prod, NonTerminal.ExprArithPrime),
+        rule(11, NonTerminal.ExprArithPrime, "+ <Prod> <ExprArith'>", LexicalUnit.PLUS, NonTerminal.Prod, NonTerminal.ExprArithPrime),
+        rule(12, NonTerminal.ExprArithPrime, "- <Prod> <ExprArith'>", LexicalUnit.MINUS, NonTerminal.Prod, NonTerminal.ExprArithPrime),
+        rule(13, NonTerminal.ExprArithPrime, "ɛ"),
+        rule(14, NonTerminal.Prod, "<Atom> <Prod'>", NonTerminal.Atom, NonTerminal.ProdPrime),
+        rule(15, NonTerminal.ProdPrime, "* <Atom> <Prod'>", LexicalUnit.TIMES, NonTerminal.Atom, NonTerminal.ProdPrime),
+        rule(16, NonTerminal.ProdPrime, "/ <Atom> <Prod'>", LexicalUnit.DIVIDE, NonTerminal.Atom, NonTerminal.ProdPrime),
+        rule(17, NonTerminal.ProdPrime, "ɛ"),
+        rule(18, NonTerminal.Atom, "[VarName]", LexicalUnit.VARNAME),
+        rule(19, NonTerminal.Atom, "[Number]", LexicalUnit.NUMBER),
+        rule(20, NonTerminal.Atom, "(<ExprArith>)", LexicalUnit.LPAREN, NonTerminal.ExprArith, LexicalUnit.RPAREN),
+        rule(21, NonTerminal.Atom, "- <Atom>", LexicalUnit.MINUS, NonTerminal.Atom),
+        rule(22, NonTerminal.If, "IF {<Cond>} THEN <Code><IfTail>",
+                LexicalUnit.IF, LexicalUnit.LBRACK, NonTerminal.Cond, LexicalUnit.RBRACK, LexicalUnit.THEN, NonTerminal.Code, NonTerminal.IfTail),
+        rule(23, NonTerminal.IfTail, "END", LexicalUnit.END),
+        rule(24, NonTerminal.IfTail, "ELSE <Code> END", LexicalUnit.ELSE, NonTerminal.Code, LexicalUnit.END),
+        rule(25, NonTerminal.Cond, "<SimpleCond> <Cond'>", NonTerminal.SimpleCond, NonTerminal.CondPrime),
+        rule(26, NonTerminal.CondPrime, "-> <Cond>", LexicalUnit.IMPLIES, NonTerminal.Cond),
+        rule(27, NonTerminal.CondPrime, "ɛ"),
+        rule(28, NonTerminal.SimpleCond, "|<Cond>|", LexicalUnit.PIPE, NonTerminal.Cond, LexicalUnit.PIPE),
+        rule(29, NonTerminal.SimpleCond, "<ExprArith> <Comp> <ExprArith>", NonTerminal.ExprArith, NonTerminal.Comp, NonTerminal.ExprArith),
+        rule(30, NonTerminal.Comp, "==", LexicalUnit.EQUAL),
+        rule(31, NonTerminal.Comp, "<=", LexicalUnit.SMALEQ),
+        rule(32, NonTerminal.Comp, "<", LexicalUnit.SMALLER),
+        rule(33, NonTerminal.While, "WHILE <Cond> REPEAT <Code>",
+                LexicalUnit.WHILE, LexicalUnit.LBRACK, NonTerminal.Cond, LexicalUnit.RBRACK, LexicalUnit.REPEAT, NonTerminal.Code, LexicalUnit.END),
+        rule(34, NonTerminal.Output, "OUT([VarName])", LexicalUnit.OUTPUT, LexicalUnit.LPAREN, LexicalUnit.VARNAME, LexicalUnit.RPAREN),
+        rule(35, NonTerminal.Input, "IN([VarName])", LexicalUnit.INPUT, LexicalUnit.LPAREN, LexicalUnit.VARNAME, LexicalUnit.RPAREN),
+    };
+
+    /**
+     * For each variable and look-ahead, the index in {@link #RULES} of the rule to apply, or -1 for a syntax error.
+     *
+     * A variable with a single rule starting with a terminal applies it whatever the look-ahead, so that the
+     * mismatch is reported by the matching of that terminal, as the recursive descent does.
+     */
+    private static final int[][] TABLE = new int[NonTerminal.values().length][LexicalUnit.values().length];
+
+    /**
+     * For each variable, the variable named in the error when no rule applies. It differs from the variable itself
+     * for &lt;Prod&gt; and &lt;Cond&gt;, whose errors have always been reported as &lt;ExprArith&gt; ones.
+     */
+    private static final NonTerminal[] REPORTED = new NonTerminal[NonTerminal.values().length];
+
+    /**
+     * For each variable, the terminals listed in the error when no rule applies, in the order of the messages of
+     * the recursive descent.
+     */
+    private static final List<List<LexicalUnit>> EXPECTED = new ArrayList<>();
+
+    static {
+        List<EnumSet<LexicalUnit>> first = new ArrayList<>();
+        List<EnumSet<LexicalUnit>> follow = new ArrayList<>();
+        boolean[] nullable = new boolean[NonTerminal.values().length];
+        for (int i = 0; i < NonTerminal.values().length; i++) {
+            first.add(EnumSet.noneOf(LexicalUnit.class));
+            follow.add(EnumSet.noneOf(LexicalUnit.class));
+            EXPECTED.add(List.of());
+        }
+        // Fixed points of FIRST, nullable and FOLLOW
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Rule rule : RULES) {
+                int lhs = rule.lhs().ordinal();
+                changed |= first.get(lhs).addAll(first(rule.rhs(), 0, first, nullable));
+                if (!nullable[lhs] && nullable(rule.rhs(), 0, nullable)) {
+                    nullable[lhs] = changed = true;
+                }
+                for (int i = 0; i < rule.rhs().length; i++) {
+                    if (rule.rhs()[i] < 0) {
+                        EnumSet<LexicalUnit> symbolFollow = follow.get(~rule.rhs()[i]);
+                        changed |= symbolFollow.addAll(first(rule.rhs(), i + 1, first, nullable));
+                        if (nullable(rule.rhs(), i + 1, nullable)) {
+                            changed |= symbolFollow.addAll(follow.get(lhs));
+                        }
+                    }
+                }
+            }
+        }
+        for (int[] row : TABLE) {
+            Arrays.fill(row, -1);
+        }
+        for (int r = 0; r < RULES.length; r++) {
+            Rule rule = RULES[r];
+            int lhs = rule.lhs().ordinal();
+            EnumSet<LexicalUnit> lookAheads = first(rule.rhs(), 0, first, nullable);
+            if (nullable(rule.rhs(), 0, nullable)) {
+                lookAheads.addAll(follow.get(lhs));
+            }
+            for (LexicalUnit lookAhead : lookAheads) {
+                if (TABLE[lhs][lookAhead.ordinal()] >= 0) {
+                    throw new IllegalStateException("The grammar is not LL(1): rules " + RULES[TABLE[lhs][lookAhead.ordinal()]].number()
+                            + " and " + rule.number() + " both apply to " + rule.lhs() + " on " + lookAhead);
+                }
+                TABLE[lhs][lookAhead.ordinal()] = r;
+            }
+        }
+        for (NonTerminal variable : NonTerminal.values()) {
+            REPORTED[variable.ordinal()] = variable;
+            List<Rule> rules = Arrays.stream(RULES).filter(rule -> rule.lhs() == variable).toList();
+            if (rules.size() == 1 && rules.getFirst().rhs().length > 0 && rules.getFirst().rhs()[0] >= 0) {
+                Arrays.fill(TABLE[variable.ordinal()], rules.getFirst().number() - 1);
+            }
+        }
+        REPORTED[NonTerminal.Prod.ordinal()] = NonTerminal.ExprArith;
+        REPORTED[NonTerminal.Cond.ordinal()] = NonTerminal.ExprArith;
+        expected(NonTerminal.Code, LexicalUnit.IF, LexicalUnit.ELSE, LexicalUnit.WHILE, LexicalUnit.OUTPUT,
+                LexicalUnit.INPUT, LexicalUnit.VARNAME, LexicalUnit.END);
+        expected(NonTerminal.Instruction, LexicalUnit.VARNAME, LexicalUnit.IF, LexicalUnit.WHILE, LexicalUnit.OUTPUT,
+                LexicalUnit.INPUT);
+        expected(NonTerminal.ExprArith, LexicalUnit.MINUS, LexicalUnit.LPAREN, LexicalUnit.VARNAME, LexicalUnit.NUMBER);
+        expected(NonTerminal.ExprArithPrime, LexicalUnit.PLUS, LexicalUnit.MINUS, LexicalUnit.COLUMN, LexicalUnit.RPAREN,
+                LexicalUnit.RBRACK, LexicalUnit.EQUAL, LexicalUnit.SMALEQ, LexicalUnit.SMALLER, LexicalUnit.IMPLIES,
+                LexicalUnit.PIPE);
+        expected(NonTerminal.Prod, LexicalUnit.MINUS, LexicalUnit.LPAREN, LexicalUnit.VARNAME, LexicalUnit.NUMBER);
+        expected(NonTerminal.ProdPrime, LexicalUnit.PLUS, LexicalUnit.MINUS, LexicalUnit.TIMES, LexicalUnit.DIVIDE,
+                LexicalUnit.COLUMN, LexicalUnit.RPAREN, LexicalUnit.RBRACK, LexicalUnit.SMALEQ, LexicalUnit.IMPLIES,
+                LexicalUnit.PIPE, LexicalUnit.EQUAL, LexicalUnit.SMALLER);
+        expected(NonTerminal.Atom, LexicalUnit.MINUS, LexicalUnit.LPAREN, LexicalUnit.VARNAME, LexicalUnit.NUMBER);
+        expected(NonTerminal.IfTail, LexicalUnit.END, LexicalUnit.ELSE);
+        expected(NonTerminal.Cond, LexicalUnit.MINUS, LexicalUnit.LPAREN, LexicalUnit.PIPE, LexicalUnit.VARNAME,
+                LexicalUnit.NUMBER);
+        expected(NonTerminal.CondPrime, LexicalUnit.IMPLIES, LexicalUnit.PIPE, LexicalUnit.RBRACK);
+        expected(NonTerminal.SimpleCond, LexicalUnit.PIPE, LexicalUnit.MINUS, LexicalUnit.LPAREN, LexicalUnit.VARNAME,
+                LexicalUnit.NUMBER);
+        expected(NonTerminal.Comp, LexicalUnit.EQUAL, LexicalUnit.SMALEQ, LexicalUnit.SMALLER);
+    }
+
+    private LL1Table() {
+    }
+
+    private static Rule rule(int number, NonTerminal lhs, String text, Object... rhs) {
+        int[] encoded = new int[rhs.length];
+        for (int i = 0; i < rhs.length; i++) {
+            encoded[i] = rhs[i] instanceof NonTerminal variable ? ~variable.ordinal() : ((LexicalUnit) rhs[i]).ordinal();
+        }
+        return new Rule(number, lhs, text, encoded);
+    }
+
+    private static void expected(NonTerminal variable, LexicalUnit... terminals) {
+        EXPECTED.set(variable.ordinal(), List.of(terminals));
+    }
+
+    /**
+     * Returns the FIRST set of a suffix of a right-hand side, as far as it is known.
+     */
+    private static EnumSet<LexicalUnit> first(int[] rhs, int from, List<EnumSet<LexicalUnit>> first, boolean[] nullable) {
+        EnumSet<LexicalUnit> result = EnumSet.noneOf(LexicalUnit.class);
+        for (int i = from; i < rhs.length; i++) {
+            if (rhs[i] >= 0) {
+                result.add(LexicalUnit.values()[rhs[i]]);
+                return result;
+            }
+            result.addAll(first.get(~rhs[i]));
+            if (!nullable[~rhs[i]]) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether a suffix of a right-hand side derives &epsilon;, as far as it is known.
+     */
+    private static boolean nullable(int[] rhs, int from, boolean[] nullable) {
+        for (int i = from; i < rhs.length; i++) {
+            if (rhs[i] >= 0 || !nullable[~rhs[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the rule to apply to a variable.
+     *
+     * @param variable The variable at the top of the stack.
+     * @param lookAhead The look-ahead.
+     * @return The rule, or null if none applies.
+     */
+    public static Rule rule(NonTerminal variable, LexicalUnit lookAhead) {
+        int index = TABLE[variable.ordinal()][lookAhead.ordinal()];
+        return index < 0 ? null : RULES[index];
+    }
+
+    /**
+     * Returns the error raised when no rule applies to a variable.
+     *
+     * @param variable The variable at the top of the stack.
+     * @param token The look-ahead.
+     * @return The exception to throw.
+     */
+    public static ParseException error(NonTerminal variable, Symbol token) {
+        return new ParseException(token, REPORTED[variable.ordinal()], EXPECTED.get(variable.ordinal()));
+    }
+}
@@ -1,39 +1,173 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class is responsible for generating the LLVM code from the parse tree.
+ *
+ * The parse tree is first lowered into its {@link Ast}, on which the code is generated. The code is written to an
+ * {@link Appendable} as the tree is walked: the methods handling statements emit their instructions directly, while
+ * the methods handling expressions and conditions return the name of the LLVM value holding their result.
+ *
+ * Two forms of code can be produced. By default every variable lives in an {@code alloca} and is stored to and loaded
+ * from memory. In SSA mode, variables only live in virtual registers and {@code phi} nodes merge their values where
+ * the control flow joins: at the end of an If and at the condition of a While.
+ *
+ * Constants are folded while generating: operations on literals are computed at compile time, and the literal
+ * assigned to a variable is used in place of the variable until it is reassigned or merged with another value.
+ *
+ * Implications are lowered inline: with {@code xor}/{@code or} when the right-hand side is a single comparison of
+ * variables and numbers, and otherwise with a branch skipping the right-hand side when the left-hand side is false.
+ * The input and output functions are only defined, after the main function, when the program uses them.
+ *
+ * A generator keeps nothing of a compilation but in its {@link CodegenContext}, taken from a pool of the generator at
+ * the start of the compilation and given back at its end. One generator thus serves any number of compilations, one
+ * after the other or at the same time on several threads, each context being only used by one compilation at a time.
  */
 public class LLVMParser {
 
-    private String programName = "";
+    /**
+     * Whether the variables are kept in virtual registers (SSA form) rather than in allocations.
+     */
+    private final boolean ssa;
 
-    private final HashMap<String, Integer> variables = new HashMap<>();
-    private HashSet<String> variableSet = new LinkedHashSet<>();
+    /**
+     * The contexts of the compilations which have ended, reused by the next ones.
+     */
+    private final Queue<CodegenContext> contexts = new ConcurrentLinkedQueue<>();
 
-    private int ifCounter, whileCounter, arithCounter, condCounter, prodCounter;
+    /**
+     * The state of one compilation: the output, the counters naming the LLVM values and labels, and what is known of
+     * each variable. A context is reset for the next compilation rather than made anew, keeping its arrays.
+     */
+    public static final class CodegenContext {
+        /**
+         * The name of each variable, by slot.
+         */
+        private String[] names = new String[16];
+        /**
+         * For each variable, by slot, the number of its versioned values written so far.
+         */
+        private int[] versions = new int[16];
+        private int variableCount;
+        /**
+         * For each variable, by slot, the LLVM value known to hold its current value at the point of emission.
+         * A variable without value (null) has to be loaded again from its allocation before being read.
+         */
+        private String[] loadedValues = new String[16];
 
-    private final List<String> atomicQueue = new ArrayList<>();
-    private final List<String> prodQueue = new ArrayList<>();
-    private final List<String> conditionQueue = new ArrayList<>();
-    private final List<String> endQueue = new ArrayList<>();
+        private int ifCounter, whileCounter, arithCounter, condCounter, prodCounter, impliesCounter;
+
+        /**
+         * Whether the program reads or prints integers, and thus needs the definitions of the input or output
+         * functions.
+         */
+        private boolean usesInput, usesOutput;
+
+        private Appendable out;
+
+        /**
+         * Label of the basic block in which the code is currently emitted.
+         */
+        private String currentBlock;
+
+        /**
+         * The measures counting the instructions written, or null.
+         */
+        private CompileStats stats;
+
+        private CodegenContext() {
+        }
+
+        /**
+         * Prepares the context for a new compilation.
+         */
+        private void reset(Appendable out, CompileStats stats) {
+            Arrays.fill(names, 0, variableCount, null);
+            Arrays.fill(versions, 0, variableCount, 0);
+            Arrays.fill(loadedValues, 0, variableCount, null);
+            variableCount = 0;
+            ifCounter = whileCounter = arithCounter = condCounter = prodCounter = impliesCounter = 0;
+            usesInput = usesOutput = false;
+            this.out = out;
+            currentBlock = "entry";
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * Creates a code generator keeping the variables in allocations.
+     */
+    public LLVMParser() {
+        this(false);
+    }
 
     /**
-     * Generates a new line in the LLVM code.
+     * Creates a code generator.
      *
-     * @return String
+     * @param ssa Whether to keep the variables in virtual registers with phi nodes (true) or in allocations (false).
      */
-    private String line() {
-        return line("");
+    public LLVMParser(boolean ssa) {
+        this.ssa = ssa;
     }
 
     /**
-     * Generates a new line in the LLVM code with the given input.
+     * Writes the given text to the LLVM code.
      *
-     * @param input The input to generate the new line.
-     * @return String
+     * @param text The text to write.
      */
-    private String line(String input) {
-        return input.concat("\n");
+    private void emit(CodegenContext c, String text) {
+        try {
+            c.out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the label starting a new basic block.
+     *
+     * @param name The label of the block.
+     */
+    private void label(CodegenContext c, String name) {
+        line(c, name + ":");
+        c.currentBlock = name;
+    }
+
+    /**
+     * Writes a new line in the LLVM code.
+     */
+    private void line(CodegenContext c) {
+        emit(c, "\n");
+    }
+
+    /**
+     * Writes a new line in the LLVM code with the given input.
+     *
+     * @param input The input to write on the new line.
+     */
+    private void line(CodegenContext c, String input) {
+        if (c.stats != null) {
+            countInstruction(c.stats, input);
+        }
+        emit(c, input);
+        emit(c, "\n");
+    }
+
+    /**
+     * Counts the instruction on a line of the main function, if the line is one.
+     *
+     * @param stats The measures of the compilation.
+     * @param line The line, which is an instruction, a label or the closing brace of the function.
+     */
+    private static void countInstruction(CompileStats stats, String line) {
+        if (line.endsWith(":") || line.equals("}")) {
+            return;
+        }
+        int start = line.startsWith("%") ? line.indexOf(" = ") + 3 : 0;
+        int end = line.indexOf(' ', start);
+        stats.countInstruction(line.substring(start, end < 0 ? line.length() : end));
     }
 
     /**
@@ -41,8 +175,8 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getCurrentProdVar() {
-        return "%prod" + prodCounter;
+    private String getCurrentProdVar(CodegenContext c) {
+        return "%prod" + c.prodCounter;
     }
 
     /**
@@ -50,9 +184,9 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getNewProdVar() {
-        prodCounter++;
-        return getCurrentProdVar();
+    private String getNewProdVar(CodegenContext c) {
+        c.prodCounter++;
+        return getCurrentProdVar(c);
     }
 
     /**
@@ -60,8 +194,8 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getCurrentArithVar() {
-        return "%arith" + arithCounter;
+    private String getCurrentArithVar(CodegenContext c) {
+        return "%arith" + c.arithCounter;
     }
 
     /**
@@ -69,9 +203,9 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getNewArithVar() {
-        arithCounter++;
-        return getCurrentArithVar();
+    private String getNewArithVar(CodegenContext c) {
+        c.arithCounter++;
+        return getCurrentArithVar(c);
     }
 
     /**
@@ -79,8 +213,8 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getCurrentCondVar() {
-        return "%cond" + condCounter;
+    private String getCurrentCondVar(CodegenContext c) {
+        return "%cond" + c.condCounter;
     }
 
     /**
@@ -88,47 +222,102 @@ public class LLVMParser {
      *
      * @return String
      */
-    private String getNewCondVar() {
-        condCounter++;
-        return getCurrentCondVar();
+    private String getNewCondVar(CodegenContext c) {
+        c.condCounter++;
+        return getCurrentCondVar(c);
     }
 
     /**
      * Updates the variable counter.
      *
-     * @param varName The variable name to update.
+     * @param slot The slot of the variable to update.
      */
-    private void updateVariableCounter(String varName) {
-        int index = variables.get(varName) + 1;
-        variables.put(varName, index);
+    private void updateVariableCounter(CodegenContext c, int slot) {
+        c.versions[slot]++;
     }
 
     /**
-     * Adds a new variable to the variables map.
+     * Returns the LLVM value holding the current value of the given variable.
+     * The variable is only loaded from its allocation if no value loaded or stored earlier is still valid here.
      *
-     * @param filteredVariable The variable to add.
+     * @param slot The slot of the variable to get the value from.
+     * @return String
      */
-    private void addVariable(String filteredVariable) {
-        variables.put(filteredVariable, 1);
+    private String getCurrentVariableVal(CodegenContext c, int slot) {
+        String value = c.loadedValues[slot];
+        if (value == null) {
+            value = getNewVariableVal(c, slot);
+            line(c, value + " = load i32, i32* %" + c.names[slot] + ", align 4");
+            c.loadedValues[slot] = value;
+        }
+        return value;
     }
 
     /**
-     * Returns the current variable updated pointer with the given variable name in LLVM format.
+     * Returns a new versioned pointer for the given variable in LLVM format.
      *
-     * @param varName The variable name to get the value from.
+     * @param slot The slot of the variable.
      * @return String
      */
-    private String getCurrentVariableVal(String varName) {
-        return "%".concat(varName) + "_val" + variables.get(varName);
+    private String getNewVariableVal(CodegenContext c, int slot) {
+        updateVariableCounter(c, slot);
+        return "%".concat(c.names[slot]) + "_val" + c.versions[slot];
     }
 
     /**
-     * Returns the program end.
+     * Writes the store of a value into a variable, which then becomes the known current value of the variable.
      *
-     * @return String
+     * @param slot The slot of the variable to store into.
+     * @param value The LLVM value to store.
      */
-    private String getProgramEnd() {
-        return endQueue.removeFirst();
+    private void storeVariable(CodegenContext c, int slot, String value) {
+        if (!ssa) {
+            line(c, "store i32 " + value + ", i32* %" + c.names[slot] + ", align 4");
+        }
+        c.loadedValues[slot] = value;
+    }
+
+    /**
+     * Writes the phi nodes merging the values of the variables which differ between two incoming blocks.
+     * The merged values become the current values of the variables.
+     *
+     * @param firstValues The values of the variables at the end of the first incoming block, by slot.
+     * @param firstBlock The label of the first incoming block.
+     * @param secondValues The values of the variables at the end of the second incoming block, by slot.
+     * @param secondBlock The label of the second incoming block.
+     */
+    private void mergeVariables(CodegenContext c, String[] firstValues, String firstBlock, String[] secondValues, String secondBlock) {
+        for (int slot = 0; slot < c.variableCount; slot++) {
+            String first = firstValues[slot];
+            String second = secondValues[slot];
+            if (!first.equals(second)) {
+                String phi = getNewVariableVal(c, slot);
+                line(c, phi + " = phi i32 [" + first + ", %" + firstBlock + "], [" + second + ", %" + secondBlock + "]");
+                c.loadedValues[slot] = phi;
+            }
+        }
+    }
+
+    /**
+     * Marks the variables assigned (by an assignment or an input) somewhere in the given statements.
+     *
+     * @param seq The statements to search.
+     * @param assigned Whether each variable is assigned, by slot, set for the assigned variables.
+     */
+    private static void assignedVariables(Ast.Seq seq, boolean[] assigned) {
+        for (Ast.Statement statement : seq.statements()) {
+            switch (statement) {
+                case Ast.Assign assign -> assigned[assign.slot()] = true;
+                case Ast.In in -> assigned[in.slot()] = true;
+                case Ast.If iF -> {
+                    assignedVariables(iF.then(), assigned);
+                    assignedVariables(iF.otherwise(), assigned);
+                }
+                case Ast.While whilE -> assignedVariables(whilE.body(), assigned);
+                case Ast.Out out -> {
+                }
+            }
+        }
     }
 
     /**
@@ -139,105 +328,168 @@ public class LLVMParser {
      * @throws RuntimeException If an unknown non-terminal expression is found.
      */
     public String[] generate(ParseTree parseTree) throws RuntimeException {
-        String result = look(parseTree);
-        return new String[]{programName.concat(".ll"), result};
+        return generate(AstBuilder.lower(parseTree));
     }
 
     /**
-     * Processes the given parse tree node and returns its corresponding LLVM code according to the
-     * non-terminal or terminal expression it has.
-     * This method is recursive.
+     * Generates LLVM code from the provided abstract syntax tree.
      *
-     * @param node The parse tree node to process.
-     * @return The LLVM code corresponding to the given parse tree node.
+     * @param program The abstract syntax tree of the program.
+     * @return An array containing the name of the program and the generated LLVM code.
+     */
+    public String[] generate(Ast.Program program) {
+        StringBuilder result = new StringBuilder();
+        CodegenContext c = acquire(result, null);
+        try {
+            program(c, program);
+        } finally {
+            release(c);
+        }
+        return new String[]{program.name().concat(".ll"), result.toString()};
+    }
+
+    /**
+     * Generates LLVM code from the provided parse tree, writing the instructions to the given output as they are produced.
+     *
+     * @param parseTree The parse tree to generate the LLVM code from.
+     * @param output The destination of the generated LLVM code.
+     * @return The name of the generated LLVM file.
+     * @throws IOException If writing to the output fails.
      * @throws RuntimeException If an unknown non-terminal expression is found.
      */
-    public String look(ParseTree node) {
-        String expression = node.getLabel().toString();
-        if (expression.startsWith("Non-terminal symbol: ")) {
-            String nonTerminal = expression.split("Non-terminal symbol: ")[1];
-            return switch (nonTerminal) {
-                case "Program" -> program(node);
-                case "Code" -> code(node);
-                case "Instruction" -> instruction(node);
-                case "Assign" -> assign(node);
-                case "ExprArith" -> exprArith(node);
-                case "ExprArith'" -> exprArithPrime(node);
-                case "Prod" -> prod(node);
-                case "Prod'" -> prodPrime(node);
-                case "Atom" -> atom(node);
-                case "Input" -> input(node);
-                case "Output" -> output(node);
-                case "If" -> iF(node);
-                case "Cond" -> cond(node);
-                case "Cond'" -> condPrime(node);
-                case "Comp" -> comp(node);
-                case "SimpleCond" -> simpleCond(node);
-                case "IfTail" -> ifTail(node);
-                case "While" -> whilE(node);
-                default -> throw new RuntimeException("Unknown Non-terminal Expression: " + nonTerminal);
-            };
-        } else {
-            // Terminal symbols
-            String terminal = expression.split("lexical unit: ")[1];
-            String token = expression.split("lexical unit: ")[0].split("token: ")[1].replaceAll("\\s", "");
-            return switch (terminal) {
-                case "[ProgName]" -> setProgramName(token);
-                case "[VarName]" -> "%".concat(token);
-                case "[Number]" -> token;
-                case "LET" -> "define i32 ";
-                case "BE" -> line(" {");
-                case "END" -> getProgramEnd();
-                case "COLUMN" -> line();
-                case "OUT" -> "ret ";
-                case "+" -> "add";
-                case "-" -> "sub";
-                case "*" -> "mul";
-                case "/" -> "sdiv";
-                case "=" -> " = ";
-                case "==" -> "icmp eq";
-                case "<=" -> "icmp sle";
-                case "<" -> "icmp slt";
-                case "->" -> "and";
-                case "|" -> "|";
-                case "ELSE" -> "ELSE";
-                default -> "";
-            };
+    public String generate(ParseTree parseTree, Appendable output) throws IOException {
+        return generate(AstBuilder.lower(parseTree), output);
+    }
+
+    /**
+     * Generates LLVM code from the provided abstract syntax tree, writing the instructions to the given output as
+     * they are produced.
+     *
+     * @param program The abstract syntax tree of the program.
+     * @param output The destination of the generated LLVM code.
+     * @return The name of the generated LLVM file.
+     * @throws IOException If writing to the output fails.
+     */
+    public String generate(Ast.Program program, Appendable output) throws IOException {
+        return generate(program, output, null);
+    }
+
+    /**
+     * Generates LLVM code from the provided abstract syntax tree, writing the instructions to the given output as
+     * they are produced and counting them by opcode.
+     *
+     * @param program The abstract syntax tree of the program.
+     * @param output The destination of the generated LLVM code.
+     * @param stats The measures to which the instructions of the main function are added, or null.
+     * @return The name of the generated LLVM file.
+     * @throws IOException If writing to the output fails.
+     */
+    public String generate(Ast.Program program, Appendable output, CompileStats stats) throws IOException {
+        CodegenContext c = acquire(output, stats);
+        try {
+            program(c, program);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            release(c);
         }
+        return program.name().concat(".ll");
     }
 
     /**
-     * Assigns all variables in the given parse tree to initialize them
-     * before generating the LLVM code.
+     * Starts the LLVM code of a program whose statements are then generated one at a time, as they are parsed, by
+     * {@link #generate(CodegenContext, Ast.Statement, List)}, and which is ended by {@link #endProgram(CodegenContext)}.
+     * The code is the same as the one of the whole program. It is in SSA form only: the variables are only known as
+     * the statements come, too late to be allocated in the entry block.
      *
-     * @param root The parse tree root to assign the variables from.
+     * @param output The destination of the generated LLVM code.
+     * @return The context of the program, to give to the next calls. A program which is not ended keeps its context.
+     * @throws IOException If writing to the output fails.
+     * @throws IllegalStateException If this generator keeps the variables in allocations.
      */
-    public void assignAllVariablesFirst(ParseTree root) {
-        if (root.getChildren().isEmpty()) {
-            String expression = root.getLabel().toString();
-            String terminal = expression.split("lexical unit: ")[1];
-            String token = expression.split("lexical unit: ")[0].split("token: ")[1].replaceAll("\\s", "");
-            if (terminal.equals("[VarName]")) {
-                variableSet.add(token);
-            }
+    public CodegenContext beginProgram(Appendable output) throws IOException {
+        if (!ssa) {
+            throw new IllegalStateException("A program generated one statement at a time is in SSA form");
         }
-        for (ParseTree leaf : root.getChildren()) {
-            assignAllVariablesFirst(leaf);
+        CodegenContext c = acquire(output, null);
+        try {
+            emit(c, "define i32 @main() {\n");
+            label(c, "entry");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        return c;
+    }
+
+    /**
+     * Generates the LLVM code of the next statement of a program started by {@link #beginProgram(Appendable)}.
+     *
+     * @param c The context of the program.
+     * @param statement The statement.
+     * @param variables The variables which first appear in the statement, in order of first appearance.
+     * @throws IOException If writing to the output fails.
+     */
+    public void generate(CodegenContext c, Ast.Statement statement, List<String> variables) throws IOException {
+        try {
+            declareVariables(c, variables);
+            statement(c, statement);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Ends the LLVM code of a program started by {@link #beginProgram(Appendable)}.
+     *
+     * @param c The context of the program, which is not to be used afterwards.
+     * @throws IOException If writing to the output fails.
+     */
+    public void endProgram(CodegenContext c) throws IOException {
+        try {
+            end(c);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            release(c);
+        }
+    }
+
+    /**
+     * Returns a context for a new compilation, reusing the one of an ended compilation if any.
+     *
+     * @param output The destination of the generated LLVM code.
+     * @param stats The measures counting the instructions, or null.
+     * @return The context, reset.
+     */
+    private CodegenContext acquire(Appendable output, CompileStats stats) {
+        CodegenContext c = contexts.poll();
+        if (c == null) {
+            c = new CodegenContext();
+        }
+        c.reset(output, stats);
+        return c;
+    }
+
+    /**
+     * Gives back the context of an ended compilation, for the next one.
+     *
+     * @param c The context.
+     */
+    private void release(CodegenContext c) {
+        // The output and the measures are not kept alive by the pool
+        c.out = null;
+        c.stats = null;
+        contexts.offer(c);
     }
 
     /**
-     * Creates the LLVM code for logical implication between two boolean values.
+     * Returns the name of the LLVM file generated for the given program, without generating it.
      *
-     * @return The LLVM code for logical implication.
+     * @param parseTree The parse tree of a whole program.
+     * @return The name of the LLVM file for the program.
      */
-    private String logicalImplication() {
-        return "define i1 @logical_implication(i1 %p, i1 %q) {\n" +
-                "entry:\n" +
-                "    %not_p = xor i1 %p, true\n" +
-                "    %result = or i1 %not_p, %q\n" +
-                "    ret i1 %result\n" +
-                "}\n";
+    public static String outputFileName(ParseTree parseTree) {
+        return parseTree.getChildren().get(1).getLabel().getValue().toString().concat(".ll");
     }
 
     /**
@@ -276,435 +528,535 @@ public class LLVMParser {
     }
 
     /**
-     * Sets the program name to the given token.
+     * Generates the LLVM code of a whole program.
      *
-     * @param token The token to set the program name to.
-     * @return String indicating the start of the program.
+     * @param program The program.
      */
-    private String setProgramName(String token) {
-        programName = token;
-        return "@main()";
+    private void program(CodegenContext c, Ast.Program program) {
+        emit(c, "define i32 @main() {\n");
+        label(c, "entry");
+        declareVariables(c, program.variables());
+        code(c, program.body());
+        end(c);
     }
 
     /**
-     * Generates the LLVM code for the Program non-terminal expression.
+     * Declares new variables, which get the next slots, allocating them unless in SSA form.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Program non-terminal expression.
+     * @param variables The variables, in order of their slots.
      */
-    private String program(ParseTree node) {
-        // Program -> LET [ProgName] BE <Code> END
-        assignAllVariablesFirst(node);
-        endQueue.addFirst("ret i32 0");
-        String variablesAssignation = "";
-        for (String var : variableSet) {
-            addVariable(var);
-            String allocation = line("%" + var + " = alloca i32, align 4");
-            variablesAssignation = variablesAssignation.concat(allocation);
+    private void declareVariables(CodegenContext c, List<String> variables) {
+        if (c.variableCount + variables.size() > c.names.length) {
+            int capacity = Math.max(c.variableCount + variables.size(), 2 * c.names.length);
+            c.names = Arrays.copyOf(c.names, capacity);
+            c.versions = Arrays.copyOf(c.versions, capacity);
+            c.loadedValues = Arrays.copyOf(c.loadedValues, capacity);
+        }
+        for (String var : variables) {
+            int slot = c.variableCount++;
+            c.names[slot] = var;
+            c.versions[slot] = 1;
+            if (ssa) {
+                // Variables read before being assigned are 0
+                c.loadedValues[slot] = "0";
+            } else {
+                line(c, "%" + var + " = alloca i32, align 4");
+            }
         }
-        return line(logicalImplication()) +
-                line(inputDefinition()) +
-                line(outputDefinition()) +
-                look(node.getChildren().get(0)) +
-                look(node.getChildren().get(1)) +
-                look(node.getChildren().get(2)) +
-                line("entry:") +
-                variablesAssignation +
-                look(node.getChildren().get(3)) +
-                look(node.getChildren().get(4)) +
-                line() +
-                line("}");
     }
 
     /**
-     * Generates the LLVM code for the Code non-terminal expression.
+     * Writes the end of the main function, then the definitions of the input and output functions it uses.
+     */
+    private void end(CodegenContext c) {
+        line(c, "ret i32 0");
+        line(c, "}");
+        if (c.usesInput) {
+            line(c);
+            emit(c, inputDefinition());
+        }
+        if (c.usesOutput) {
+            line(c);
+            emit(c, outputDefinition());
+        }
+    }
+
+    /**
+     * Generates the LLVM code of a sequence of statements, each followed by an empty line.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Code non-terminal expression.
+     * @param seq The statements.
      */
-    private String code(ParseTree node) {
-        // Code -> <Instruction> : <Code> | epsilon
-        if (node.getChildren().size() == 3) {
-            return updateVars() + line(look(node.getChildren().getFirst())) +
-                    look(node.getChildren().get(2));
+    private void code(CodegenContext c, Ast.Seq seq) {
+        for (Ast.Statement statement : seq.statements()) {
+            statement(c, statement);
         }
-        return "";
     }
 
     /**
-     * Generates the LLVM code for the Instruction non-terminal expression.
+     * Generates the LLVM code of a statement, followed by an empty line.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Instruction non-terminal expression.
+     * @param statement The statement.
      */
-    private String instruction(ParseTree node) {
-        // Instruction -> <Assign> | <If> | <While> | <Output> | <Input>
-        return look(node.getChildren().getFirst());
+    private void statement(CodegenContext c, Ast.Statement statement) {
+        switch (statement) {
+            case Ast.Assign assign -> storeVariable(c, assign.slot(), expression(c, assign.value()));
+            case Ast.If iF -> iF(c, iF);
+            case Ast.While whilE -> whilE(c, whilE);
+            case Ast.Out out -> output(c, out);
+            case Ast.In in -> input(c, in);
+        }
+        line(c);
     }
 
     /**
-     * Generates the LLVM code for the Assign non-terminal expression.
+     * Returns the value of the given expression, writing the code computing it if needed.
      *
-     * @param varName The variable name to assign the value to.
-     * @return The LLVM code for the Assign non-terminal expression.
+     * @param expr The expression.
+     * @return The LLVM value holding the result of the expression.
      */
-    private String varNameLoadCall(String varName) {
-        return line("%" + varName + "_val" + variables.get(varName) + " = load i32, i32* %" + varName + ", align 4");
+    private String expression(CodegenContext c, Ast.Expr expr) {
+        return switch (expr) {
+            case Ast.Num num -> String.valueOf(num.value());
+            case Ast.Var var -> getCurrentVariableVal(c, var.slot());
+            case Ast.Neg neg -> negation(c, neg);
+            case Ast.BinOp binOp -> operation(c, binOp);
+        };
     }
 
     /**
-     * Updates the variables references in the LLVM code.
+     * Returns the value of a chain of binary operations, writing the code computing it if needed.
+     * The left operands are followed with a loop, a long sum or product being a deep chain of left operands.
      *
-     * @return The updated variables references in the LLVM code.
+     * @param node The last operation of the chain.
+     * @return The LLVM value holding the result of the operation.
      */
-    private String updateVars() {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(line("; Updated variables references"));
-        variables.forEach((value, index) -> {
-            updateVariableCounter(value);
-            stringBuilder.append(varNameLoadCall(value));
-        });
-        stringBuilder.append(line());
-        return stringBuilder.toString();
+    private String operation(CodegenContext c, Ast.BinOp node) {
+        ArrayDeque<Ast.BinOp> chain = new ArrayDeque<>();
+        Ast.Expr first = node;
+        while (first instanceof Ast.BinOp binOp) {
+            chain.push(binOp);
+            first = binOp.left();
+        }
+        String left = expression(c, first);
+        while (!chain.isEmpty()) {
+            Ast.BinOp binOp = chain.pop();
+            String right = expression(c, binOp.right());
+            String operator = switch (binOp.operator()) {
+                case PLUS -> "add";
+                case MINUS -> "sub";
+                case TIMES -> "mul";
+                case DIVIDE -> "sdiv";
+                default -> throw new RuntimeException("Unknown arithmetic operator: " + binOp.operator());
+            };
+            String result = foldArithmetic(operator, left, right);
+            if (result == null) {
+                result = binOp.operator() == LexicalUnit.PLUS || binOp.operator() == LexicalUnit.MINUS
+                        ? getNewArithVar(c) : getNewProdVar(c);
+                line(c, result + " = " + operator + " i32 " + left + ", " + right);
+            }
+            left = result;
+        }
+        return left;
     }
 
     /**
-     * Generates the LLVM code for the Assign non-terminal expression.
+     * Returns the value of the opposite of an expression, writing the code computing it if needed.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Assign non-terminal expression.
+     * @param node The negation.
+     * @return The LLVM value holding the result of the negation.
      */
-    private String assign(ParseTree node) {
-        // Assign -> [VarName] = <ExprArith>
-        String varName = look(node.getChildren().get(0));
-        String exprArith = look(node.getChildren().get(2));
-        String currentArithVar = getCurrentArithVar();
-        String filteredVariable = varName.substring(1);
-        String reAssign = line("store i32 " + currentArithVar + ", i32* " + varName + ", align 4");
-        updateVariableCounter(filteredVariable);
-        return exprArith + reAssign + varNameLoadCall(filteredVariable);
+    private String negation(CodegenContext c, Ast.Neg node) {
+        String operand = expression(c, node.operand());
+        if (isConstant(operand)) {
+            return String.valueOf(-Integer.parseInt(operand));
+        }
+        String result = getNewArithVar(c);
+        line(c, result + " = sub i32 0, " + operand);
+        return result;
     }
 
     /**
-     * Generates the LLVM code for the ExprArith non-terminal expression.
+     * Returns whether the given LLVM value is a constant rather than a register.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the ExprArith non-terminal expression.
+     * @param value The LLVM value.
+     * @return True if the value is a literal.
      */
-    private String exprArith(ParseTree node) {
-        // <ExprArith> -> <Prod> <ExprArith'>
-        String prod = look(node.getChildren().getFirst());
-        prodQueue.addFirst(getCurrentProdVar());
-        String exprArithPrime = look(node.getChildren().get(1));
-        String currentArithVar = getCurrentArithVar();
-        return prod + exprArithPrime + line(getNewArithVar() + " = add i32 0, " + (exprArithPrime.isEmpty() ? prodQueue.removeFirst() : currentArithVar));
+    private static boolean isConstant(String value) {
+        return !value.startsWith("%");
     }
 
     /**
-     * Generates the LLVM code for the ExprArith' non-terminal expression.
+     * Computes at compile time the result of an arithmetic operation when possible: when both operands are
+     * literals, or when one of them is a neutral or absorbing element of the operation.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the ExprArith' non-terminal expression.
+     * @param operator The LLVM arithmetic instruction (add, sub, mul or sdiv).
+     * @param left The LLVM value of the left operand.
+     * @param right The LLVM value of the right operand.
+     * @return The LLVM value of the result, or null if the operation has to be emitted.
      */
-    private String exprArithPrime(ParseTree node) {
-        // <ExprArith'> -> + <Prod> <ExprArith'> | - <Prod> <ExprArith'> | ε
-        if (node.getChildren().size() == 3) {
-            String operator = look(node.getChildren().getFirst());
-            String prod = look(node.getChildren().get(1));
-            prodQueue.addFirst(getCurrentProdVar());
-            if (prodQueue.size() == 2) {
-                // Check if atomic queue has at least a pair ov atoms
-                String rightAtom = prodQueue.removeFirst();
-                String leftAtom = prodQueue.removeFirst();
-                return prod + line(getNewArithVar() + " = " + operator + " i32 " + leftAtom + ", " + rightAtom) +
-                        exprArithPrime(node.getChildren().get(2));
-            } else if (prodQueue.size() == 1) {
-                // Check if atomic queue has at least one atom
-                String currentExprArithVar = getCurrentArithVar();
-                return prod + line(getNewArithVar() + " = " + operator + " i32 " + currentExprArithVar + ", " + prodQueue.removeFirst()) +
-                        exprArithPrime(node.getChildren().get(2));
-            } else {
-                return "";
-            }
+    private static String foldArithmetic(String operator, String left, String right) {
+        if (isConstant(left) && isConstant(right)) {
+            int l = Integer.parseInt(left);
+            int r = Integer.parseInt(right);
+            return switch (operator) {
+                case "add" -> String.valueOf(l + r);
+                case "sub" -> String.valueOf(l - r);
+                case "mul" -> String.valueOf(l * r);
+                // Division by zero and overflowing division are left to the target
+                case "sdiv" -> r == 0 || (l == Integer.MIN_VALUE && r == -1) ? null : String.valueOf(l / r);
+                default -> null;
+            };
         }
-        return "";
+        return switch (operator) {
+            case "add" -> left.equals("0") ? right : right.equals("0") ? left : null;
+            case "sub" -> right.equals("0") ? left : null;
+            case "mul" -> left.equals("0") || right.equals("0") ? "0" : left.equals("1") ? right : right.equals("1") ? left : null;
+            case "sdiv" -> right.equals("1") ? left : null;
+            default -> null;
+        };
     }
 
     /**
-     * Generates the LLVM code for the Prod non-terminal expression.
+     * Computes at compile time the result of a comparison of two literals.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Prod non-terminal expression.
+     * @param comp The LLVM comparison instruction.
+     * @param left The LLVM value of the left operand.
+     * @param right The LLVM value of the right operand.
+     * @return The i1 constant of the result, or null if the comparison has to be emitted.
      */
-    private String prod(ParseTree node) {
-        // Prod -> <Atom> <Prod'>
-        String possibleAtomicExprArith = "";
-        String atomReference = "";
-        if (isArithmeticAtom(node.getChildren().getFirst())) {
-            possibleAtomicExprArith = look(node.getChildren().getFirst().getChildren().get(1));
-            atomReference = getCurrentArithVar();
+    private static String foldComparison(String comp, String left, String right) {
+        if (!isConstant(left) || !isConstant(right)) {
+            return null;
+        }
+        int l = Integer.parseInt(left);
+        int r = Integer.parseInt(right);
+        return switch (comp) {
+            case "icmp eq" -> String.valueOf(l == r);
+            case "icmp sle" -> String.valueOf(l <= r);
+            case "icmp slt" -> String.valueOf(l < r);
+            default -> null;
+        };
+    }
+
+    /**
+     * Computes at compile time the result of an implication when one of its sides decides it.
+     *
+     * @param left The i1 value of the left-hand side.
+     * @param right The i1 value of the right-hand side.
+     * @return The i1 value of the result, or null if the implication has to be emitted.
+     */
+    private static String foldImplication(String left, String right) {
+        if (left.equals("false") || right.equals("true")) {
+            return "true";
+        }
+        if (left.equals("true")) {
+            return right;
+        }
+        return null;
+    }
+
+    /**
+     * Generates the LLVM code of an If.
+     *
+     * @param node The If statement.
+     */
+    private void iF(CodegenContext c, Ast.If node) {
+        int id = ++c.ifCounter;
+        String ifBlockLabel = "if_block" + id;
+        String codeEnd = "end" + id;
+        String conditionVar = condition(c, node.cond());
+        String[] beforeValues = c.loadedValues.clone();
+        line(c, "br i1 " + conditionVar + ", label %" + ifBlockLabel + ", label %else_block" + id);
+        label(c, ifBlockLabel);
+        code(c, node.then());
+        line(c, "br label %" + codeEnd);
+        String thenBlock = c.currentBlock;
+        String[] thenValues = c.loadedValues;
+        c.loadedValues = beforeValues;
+        label(c, "else_block" + id);
+        code(c, node.otherwise());
+        String elseBlock = c.currentBlock;
+        line(c, "br label %" + codeEnd);
+        emit(c, codeEnd + ":");
+        c.currentBlock = codeEnd;
+        if (ssa) {
+            line(c);
+            // Each phi only replaces the value of its own variable, so the values of the else branch are read in place
+            mergeVariables(c, thenValues, thenBlock, c.loadedValues, elseBlock);
         } else {
-            atomReference = look(node.getChildren().getFirst());
+            // Only the values that are the same on both branches are still known after the join
+            for (int slot = 0; slot < c.variableCount; slot++) {
+                if (c.loadedValues[slot] != null && !c.loadedValues[slot].equals(thenValues[slot])) {
+                    c.loadedValues[slot] = null;
+                }
+            }
         }
-        atomicQueue.add(atomReference);
-        String prod = look(node.getChildren().get(1));
-        String currentProdVar = getCurrentProdVar();
-        return possibleAtomicExprArith + prod + line(getNewProdVar() + " = add i32 0, " + (prod.isEmpty() ? atomicQueue.removeFirst() : currentProdVar));
     }
 
     /**
-     * Generates the LLVM code for the Prod' non-terminal expression in a recursive manner.
+     * Returns the truth value of the given condition, writing the code computing it if needed.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Prod' non-terminal expression.
+     * @param cond The condition.
+     * @return The LLVM value holding the truth value of the condition.
      */
-    private String prodPrime(ParseTree node) {
-        // Prod' -> * <Atom> <Prod'> | / <Atom> <Prod'> | ε
-        if (node.getChildren().size() == 3) {
-            String possibleAtomicExprArith = "";
-            String atomReference = "";
-            if (isArithmeticAtom(node.getChildren().get(1))) {
-                possibleAtomicExprArith = look(node.getChildren().get(1).getChildren().get(1));
-                atomReference = getCurrentArithVar();
-            } else {
-                atomReference = look(node.getChildren().get(1));
+    private String condition(CodegenContext c, Ast.Cond cond) {
+        return switch (cond) {
+            case Ast.Compare compare -> comparison(c, compare);
+            case Ast.Implies implies -> implication(c, implies);
+        };
+    }
+
+    /**
+     * Returns the truth value of an implication, writing the code computing it if needed.
+     * The right-hand sides are followed with a loop, a chain of implications being a deep chain of right-hand sides:
+     * what is left to do for each implication once its right-hand side is known is kept on a stack.
+     *
+     * @param node The first implication of the chain.
+     * @return The LLVM value holding the truth value of the implication.
+     */
+    private String implication(CodegenContext c, Ast.Implies node) {
+        ArrayDeque<PendingImplication> chain = new ArrayDeque<>();
+        Ast.Cond cond = node;
+        String right = null;
+        while (right == null) {
+            if (!(cond instanceof Ast.Implies implies)) {
+                right = condition(c, cond);
+                continue;
             }
-            String operator = look(node.getChildren().getFirst());
-            atomicQueue.add(atomReference);
-            if (atomicQueue.size() == 2) {
-                // Check if atomic queue has at least a pair ov atoms
-                String leftAtom = atomicQueue.removeFirst();
-                String rightAtom = atomicQueue.removeFirst();
-                return possibleAtomicExprArith + line(getNewProdVar() + " = " + operator + " i32 " + leftAtom + ", " + rightAtom) +
-                        prodPrime(node.getChildren().get(2));
-            } else if (atomicQueue.size() == 1) {
-                // Check if atomic queue has at least one atom
-                String currentProd = getCurrentProdVar();
-                return possibleAtomicExprArith + line(getNewProdVar() + " = " + operator + " i32 " + currentProd + ", " + atomicQueue.removeFirst()) +
-                        prodPrime(node.getChildren().get(2));
+            String left = condition(c, implies.left());
+            if (left.equals("false")) {
+                // The right-hand side does not need to be evaluated at all
+                right = "true";
+            } else if (!left.equals("true") && !isCheap(implies.right())) {
+                chain.push(startShortCircuit(c, left));
             } else {
-                return "";
+                chain.push(new PendingImplication(left, null, null, null));
             }
+            cond = implies.right();
+        }
+        while (!chain.isEmpty()) {
+            PendingImplication implication = chain.pop();
+            right = implication.endLabel() == null
+                    ? combineImplication(c, implication.left(), right)
+                    : endShortCircuit(c, implication, right);
         }
-        return "";
+        return right;
     }
 
     /**
-     * Checks if the given parse tree node is an arithmetic atom.
+     * An implication whose right-hand side is being evaluated.
      *
-     * @param atom The parse tree node to check.
-     * @return True if the given parse tree node is an arithmetic atom, false otherwise.
+     * @param left The LLVM value of the left-hand side.
+     * @param leftBlock The block branching on the left-hand side, or null if the right-hand side is always evaluated.
+     * @param endLabel The label of the block joining the branches, or null if the right-hand side is always evaluated.
+     * @param beforeValues The values loaded before the branch, or null if the right-hand side is always evaluated.
      */
-    private boolean isArithmeticAtom(ParseTree atom) {
-        return atom.getChildren().size() == 3;
+    private record PendingImplication(String left, String leftBlock, String endLabel, String[] beforeValues) {
     }
 
     /**
-     * Returns the value of the given arithmetic atom.
+     * Returns the truth value of an implication whose both sides are evaluated, writing the code computing it if
+     * needed.
      *
-     * @param node The parse tree node to get the value from.
-     * @return The value of the given arithmetic atom.
+     * @param left The LLVM value of the left-hand side.
+     * @param right The LLVM value of the right-hand side.
+     * @return The LLVM value holding the truth value of the implication.
      */
-    private String atom(ParseTree node) {
-        // Atom -> [Number] | [VarName] | ( <ExprArith> ) | - <Atom>
-        if (node.getChildren().size() == 1) {
-            String atom = look(node.getChildren().getFirst());
-            if (atom.startsWith("%")) {
-                return getCurrentVariableVal(atom.substring(1));
-            } else {
-                return atom;
+    private String combineImplication(CodegenContext c, String left, String right) {
+        String result = foldImplication(left, right);
+        if (result == null) {
+            String notLeft = getNewCondVar(c);
+            line(c, notLeft + " = xor i1 " + left + ", true");
+            if (right.equals("false")) {
+                return notLeft;
             }
-        } else if (node.getChildren().size() == 3) {
-            return look(node.getChildren().get(1));
-        } else {
-            return "-" + look(node.getChildren().get(1));
+            result = getNewCondVar(c);
+            line(c, result + " = or i1 " + notLeft + ", " + right);
         }
+        return result;
     }
 
     /**
-     * Generates the LLVM code for the If non-terminal expression.
+     * Starts the LLVM code of an implication whose right-hand side is only evaluated when the left-hand side is
+     * true, the implication being true otherwise: branches on the left-hand side to the block of the right-hand side,
+     * whose code is written next.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the If non-terminal expression.
+     * @param left The LLVM value of the left-hand side of the implication.
+     * @return The implication, to be ended by {@link #endShortCircuit} once its right-hand side is written.
      */
-    private String iF(ParseTree node) {
-        // If -> IF { <Cond> } THEN <Code> <IfTail>
-        ifCounter++;
-        String ifBlockLabel = "if_block" + ifCounter;
-        String elseBlock = "else_block" + ifCounter;
-        String condition = look(node.getChildren().get(2));
-        String conditionVar = getCurrentCondVar();
-        String code = look(node.getChildren().get(5));
-        String ifTail = look(node.getChildren().get(6));
-        String elseLabel = ", label %" + elseBlock;
-        return condition +
-                line("br i1 " + conditionVar + ", label %" + ifBlockLabel + elseLabel) +
-                line(ifBlockLabel + ":") +
-                code +
-                line("br label %end" + ifCounter) +
-                ifTail;
+    private PendingImplication startShortCircuit(CodegenContext c, String left) {
+        int id = ++c.impliesCounter;
+        String rightLabel = "implies_right" + id;
+        String endLabel = "implies_end" + id;
+        PendingImplication implication = new PendingImplication(left, c.currentBlock, endLabel, c.loadedValues.clone());
+        line(c, "br i1 " + left + ", label %" + rightLabel + ", label %" + endLabel);
+        label(c, rightLabel);
+        return implication;
     }
 
     /**
-     * Generates the LLVM code for the IfTail non-terminal expression.
+     * Ends the LLVM code of an implication started by {@link #startShortCircuit}, joining its two branches.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the IfTail non-terminal expression.
+     * @param implication The implication.
+     * @param right The LLVM value of the right-hand side, computed in the current block.
+     * @return The LLVM value holding the truth value of the implication.
      */
-    private String ifTail(ParseTree node) {
-        // If -> END | ELSE <Code> END
-        if (node.getChildren().size() == 3) {
-            String elseLabel = line("else_block" + ifCounter + ":");
-            String code = look(node.getChildren().get(1));
-            String codeEnd = "end" + ifCounter;
-            endQueue.addFirst(codeEnd);
-            return elseLabel + code + line("br label %end" + ifCounter) +
-                    look(node.getChildren().get(2)) + ":";
-        } else {
-            String codeEnd = "end" + ifCounter;
-            endQueue.addFirst(codeEnd);
-            return line("else_block" + ifCounter + ":") +
-                    line("br label %" + codeEnd) +
-                    look(node.getChildren().getFirst()) + ":";
-        }
+    private String endShortCircuit(CodegenContext c, PendingImplication implication, String right) {
+        String rightBlock = c.currentBlock;
+        line(c, "br label %" + implication.endLabel());
+        label(c, implication.endLabel());
+        // The values loaded while evaluating the right-hand side are not available when it is skipped
+        c.loadedValues = implication.beforeValues();
+        String result = getNewCondVar(c);
+        line(c, result + " = phi i1 [true, %" + implication.leftBlock() + "], [" + right + ", %" + rightBlock + "]");
+        return result;
     }
 
     /**
-     * Generates the LLVM code for the Cond non-terminal expression.
+     * Returns whether the given condition is cheap enough to be always evaluated: a single comparison between
+     * variables or numbers, which is at most one instruction besides the loads of the variables.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Cond non-terminal expression.
+     * @param cond The condition.
+     * @return True if the condition does not need to be skipped by a branch.
      */
-    private String cond(ParseTree node) {
-        // Cond → <SimpleCond> <Cond’>
-        String updatedVars = updateVars();
-        String simpleCond = look(node.getChildren().getFirst());
-        String condPrime = look(node.getChildren().get(1));
-        return updatedVars + simpleCond + condPrime;
+    private static boolean isCheap(Ast.Cond cond) {
+        return cond instanceof Ast.Compare compare && isOperand(compare.left()) && isOperand(compare.right());
     }
 
     /**
-     * Generates the LLVM code for the Cond' non-terminal expression.
+     * Returns whether the given arithmetic expression is a lone variable or number.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Cond' non-terminal expression.
+     * @param expr The expression.
+     * @return True if the expression is a single atom without operator.
      */
-    private String condPrime(ParseTree node) {
-        // <Cond’> → -> <Cond> | epsilon
-        if (node.getChildren().size() == 2) {
-            String cond = look(node.getChildren().get(1));
-            if (!conditionQueue.isEmpty()) {
-                if (conditionQueue.size() > 1) {
-                    String left = conditionQueue.removeFirst();
-                    String right = conditionQueue.removeFirst();
-                    return cond + line(getNewCondVar() + " = call i1 @logical_implication(i1" + left + ", i1" + right + ")");
-                } else {
-                    String currentCondVar = getCurrentCondVar();
-                    String right = conditionQueue.removeFirst();
-                    return cond + line(getNewCondVar() + " = call i1 @logical_implication(i1" + currentCondVar + ", i1" + right + ")");
-                }
-                // Check if atomic queue has at least one atom
-            } else {
-                return "";
-            }
-        }
-        return "";
+    private static boolean isOperand(Ast.Expr expr) {
+        return expr instanceof Ast.Var || expr instanceof Ast.Num;
     }
 
     /**
-     * Generates the LLVM code for the SimpleCond non-terminal expression.
+     * Returns the truth value of a comparison, writing the code computing it if needed.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the SimpleCond non-terminal expression.
+     * @param node The comparison.
+     * @return The LLVM value holding the truth value of the comparison.
      */
-    private String simpleCond(ParseTree node) {
-        // <SimpleCond> -> \| <Cond> \| | <ExprArith> <Comp> <ExprArith>
-        if (look(node.getChildren().getFirst()).equals("|") && look(node.getChildren().get(2)).equals("|")) {
-            //  Return operator
-            return look(node.getChildren().get(1));
-        } else {
-            //  Return comp
-            String leftExprArithm = look(node.getChildren().getFirst());
-            String leftExprArithmReference = getCurrentArithVar();
-            String comp = look(node.getChildren().get(1));
-            String rightExprArithm = look(node.getChildren().get(2));
-            String rightExprArithmReference = getCurrentArithVar();
-            String newCondVar = getNewCondVar();
-            conditionQueue.add(newCondVar);
-            return leftExprArithm + rightExprArithm +
-                    line(newCondVar + " = " + comp + " i32 " +
-                            leftExprArithmReference + ", " + rightExprArithmReference);
+    private String comparison(CodegenContext c, Ast.Compare node) {
+        String leftExprArithmReference = expression(c, node.left());
+        String comp = switch (node.comparison()) {
+            case EQUAL -> "icmp eq";
+            case SMALEQ -> "icmp sle";
+            case SMALLER -> "icmp slt";
+            default -> throw new RuntimeException("Unknown comparison: " + node.comparison());
+        };
+        String rightExprArithmReference = expression(c, node.right());
+        String folded = foldComparison(comp, leftExprArithmReference, rightExprArithmReference);
+        if (folded != null) {
+            return folded;
         }
+        String newCondVar = getNewCondVar(c);
+        line(c, newCondVar + " = " + comp + " i32 " + leftExprArithmReference + ", " + rightExprArithmReference);
+        return newCondVar;
     }
 
     /**
-     * Returns the current condition variable.
+     * While statement. We use "while" as "whilE" to avoid conflict with the reserved word.
      *
-     * @param node The parse tree node to get the current condition variable from.
-     * @return The current condition variable.
+     * @param node The While statement.
      */
-    private String comp(ParseTree node) {
-        // <Comp> -> == | <= | <
-        return look(node.getChildren().getFirst());
+    private void whilE(CodegenContext c, Ast.While node) {
+        c.whileCounter++;
+        String whileCondLabel = "while_cond" + c.whileCounter;
+        String whileBlockLabel = "while_block" + c.whileCounter;
+        String endLabel = "while_end" + c.whileCounter;
+        // The values of the variables assigned in the loop are not known anymore when coming back to the condition
+        boolean[] assigned = new boolean[c.variableCount];
+        assignedVariables(node.body(), assigned);
+        if (ssa) {
+            ssaWhile(c, node, assigned, whileCondLabel, whileBlockLabel, endLabel);
+            return;
+        }
+        for (int slot = 0; slot < c.variableCount; slot++) {
+            if (assigned[slot]) {
+                c.loadedValues[slot] = null;
+            }
+        }
+        line(c, "br label %" + whileCondLabel);
+        line(c);
+        label(c, whileCondLabel);
+        String currentCondVar = condition(c, node.cond());
+        String[] condValues = c.loadedValues.clone();
+        line(c, "br i1 " + currentCondVar + ", label %" + whileBlockLabel + ", label %" + endLabel);
+        line(c);
+        label(c, whileBlockLabel);
+        code(c, node.body());
+        line(c, "br label %" + whileCondLabel);
+        line(c);
+        label(c, endLabel);
+        // The loop is left from the condition block
+        c.loadedValues = condValues;
     }
 
     /**
-     * While non-terminal expression. We use "while" as "whilE" to avoid conflict with the reserved word.
+     * Generates the LLVM code of a While in SSA mode.
+     *
+     * The body is written before the condition block so that the phi nodes at the start of the condition block can
+     * refer to the values the variables have at the end of the body.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the While non-terminal expression.
+     * @param node The While statement.
+     * @param assigned Whether each variable is assigned in the body of the loop, by slot.
+     * @param whileCondLabel The label of the condition block.
+     * @param whileBlockLabel The label of the body.
+     * @param endLabel The label of the block following the loop.
      */
-    private String whilE(ParseTree node) {
-        //  <While> → WHILE { <Cond> } REPEAT <Code> END
-        whileCounter++;
-        String whileCondLabel = "while_cond" + whileCounter;
-        String whileBlockLabel = "while_block" + whileCounter;
-        String endLabel = "while_end" + whileCounter;
-        endQueue.addFirst(endLabel);
-        String condition = look(node.getChildren().get(2));
-        String currentCondVar = getCurrentCondVar();
-        String code = look(node.getChildren().get(5));
-
-        return line("br label %" + whileCondLabel) +
-                line() +
-                line(whileCondLabel + ":") +
-                condition +
-                line("br i1 " + currentCondVar + ", label %" + whileBlockLabel + ", label %" + endLabel) +
-                line() +
-                line(whileBlockLabel + ":") +
-                code +
-                line("br label %" + whileCondLabel) +
-                line() +
-                line(look(node.getChildren().get(6)) + ":");
+    private void ssaWhile(CodegenContext c, Ast.While node, boolean[] assigned, String whileCondLabel, String whileBlockLabel, String endLabel) {
+        String entryBlock = c.currentBlock;
+        String[] entryValues = c.loadedValues.clone();
+        for (int slot = 0; slot < c.variableCount; slot++) {
+            if (assigned[slot]) {
+                c.loadedValues[slot] = getNewVariableVal(c, slot);
+            }
+        }
+        // The phi of each assigned variable is its value at the condition
+        String[] condValues = c.loadedValues.clone();
+        line(c, "br label %" + whileCondLabel);
+        line(c);
+        label(c, whileBlockLabel);
+        code(c, node.body());
+        String bodyBlock = c.currentBlock;
+        line(c, "br label %" + whileCondLabel);
+        line(c);
+        label(c, whileCondLabel);
+        for (int slot = 0; slot < c.variableCount; slot++) {
+            if (assigned[slot]) {
+                line(c, condValues[slot] + " = phi i32 [" + entryValues[slot] + ", %" + entryBlock + "], ["
+                        + c.loadedValues[slot] + ", %" + bodyBlock + "]");
+            }
+        }
+        c.loadedValues = condValues;
+        String currentCondVar = condition(c, node.cond());
+        line(c, "br i1 " + currentCondVar + ", label %" + whileBlockLabel + ", label %" + endLabel);
+        line(c);
+        label(c, endLabel);
     }
 
     /**
-     * Generates the LLVM code for the Output non-terminal expression.
+     * Generates the LLVM code of an OUT statement.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Output non-terminal expression.
+     * @param node The OUT statement.
      */
-    private String output(ParseTree node) {
-        // Output -> OUT([VarName])
-        String updatedVars = updateVars();
-        String varName = look(node.getChildren().get(2));
-        return updatedVars + line("call void @println(i32 " + getCurrentVariableVal(varName.substring(1)) + ")");
+    private void output(CodegenContext c, Ast.Out node) {
+        c.usesOutput = true;
+        line(c, "call void @println(i32 " + getCurrentVariableVal(c, node.slot()) + ")");
     }
 
     /**
-     * Generates the LLVM code for the Input non-terminal expression.
+     * Generates the LLVM code of an IN statement.
      *
-     * @param node The parse tree node to generate the LLVM code from.
-     * @return The LLVM code for the Input non-terminal expression.
+     * @param node The IN statement.
      */
-    private String input(ParseTree node) {
-        // <Input> → IN ( [VarName] )
-        String varName = look(node.getChildren().get(2));
-        String tempInputVar = varName + "_input";
-        String filteredVariable = varName.substring(1);
-        updateVariableCounter(filteredVariable);
-        return line(tempInputVar + " = call i32 @readInt()") +
-                line("store i32 " + tempInputVar + ", i32* " + varName + ", align 4") +
-                varNameLoadCall(filteredVariable);
+    private void input(CodegenContext c, Ast.In node) {
+        String inputVar = getNewVariableVal(c, node.slot());
+        c.usesInput = true;
+        line(c, inputVar + " = call i32 @readInt()");
+        storeVariable(c, node.slot(), inputVar);
     }
 }
@@ -1,9 +1,28 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Project Part 3: Parser
  */
 public class Main{
+    /**
+     * Size (in characters) of the buffer through which the LLVM code is written.
+     */
+    private static final int LLVM_BUFFER_SIZE = 1 << 16;
+    /**
+     * Number of last rules applied printed by --display-rules when the parsing fails.
+     */
+    private static final int RECENT_RULES = 32;
+    /**
+     * Number of rules applied between two samples of the time by --display-rules.
+     */
+    private static final int RULE_SAMPLE_INTERVAL = 64;
+
     /**
      *
      * The parser
@@ -16,24 +35,62 @@ public class Main{
     public static void main(String[] args) throws FileNotFoundException, IOException, SecurityException, Exception{
         // Display the usage when no arguments are given
         if(args.length == 0){
-            System.out.println("Usage:  java -jar part3.jar [FILE]\n"
+            System.out.println("Usage:  java -jar part3.jar [OPTIONS] [FILE]\n"
+                               + "\tOPTIONS:\n"
+                               + "\t-wt, --write-tree TEX\tWrite the parse tree as LaTeX to TEX\n"
+                               + "\t-dr, --display-rules\tPrint how many times each rule of the grammar was applied, with a sample of the time\n"
+                               + "\t\t\t\tspent after it, and the last rules applied before a parsing error\n"
+                               + "\t-ns, --no-stdout\tDo not print the generated LLVM code, only write it to dist/llvm_generated\n"
+                               + "\t--table\t\t\tParse with the LL(1) table and an explicit stack instead of by recursive descent\n"
+                               + "\t--hand-lexer\t\tLex with the hand-written lexer instead of the one generated by JFlex\n"
+                               + "\t--parallel-lexer\tLex chunks of FILE in parallel with the hand-written lexer, for very large files\n"
+                               + "\t--pipeline\t\tLex, parse and generate the LLVM code of FILE in SSA form on three threads at once,\n"
+                               + "\t\t\t\twithout building its whole tree; not with -dr, -wt, --stats, --run, --jvm or --table\n"
+                               + "\t--stats FORMAT\t\tPrint the time and memory of each phase and counts of the tokens, tree nodes and LLVM\n"
+                               + "\t\t\t\tinstructions to the standard error, as text or json (FORMAT), without --pipeline\n"
+                               + "\t--ssa\t\t\tKeep the variables in registers with phi nodes instead of allocations\n"
+                               + "\t--run\t\t\tRun the program with the built-in interpreter instead of generating LLVM code\n"
+                               + "\t--jvm\t\t\tRun the program compiled to JVM bytecode instead of generating LLVM code\n"
+                               + "\t-b, --batch INPUT...\tCompile every .gls file of the INPUT files, directories or glob patterns in parallel\n"
+                               + "\t\t\t\tto dist/llvm_generated, the other options having to come before\n"
+                               + "\t--server SOCKET\t\tStay resident and compile the programs sent on the Unix domain socket SOCKET\n"
+                               + "\t--client SOCKET\t\tCompile FILE (or the standard input if FILE is -) with the server listening on SOCKET\n"
                                + "\tFILE:\n"
                                + "\tA .gls file containing a GILLES program\n"
                                );
             System.exit(0);
         } else {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-b") || args[i].equals("--batch")) {
+                    boolean ssa = Arrays.asList(args).subList(0, i).contains("--ssa");
+                    compileBatch(Arrays.asList(args).subList(i + 1, args.length), ssa);
+                    return;
+                }
+                if (args[i].equals("--server") && i + 1 < args.length) {
+                    startServer(Paths.get(args[i + 1]));
+                    return;
+                }
+                if (args[i].equals("--client") && i + 1 < args.length) {
+                    boolean ssa = Arrays.asList(args).contains("--ssa");
+                    compileWithServer(Paths.get(args[i + 1]), args[args.length - 1], ssa);
+                    return;
+                }
+            }
             boolean writeTree = false;
             boolean fullOutput = false;
-            boolean fullLLVMOutput = true;
+            boolean printLLVM = true;
+            boolean ssa = false;
+            boolean run = false;
+            boolean jvm = false;
+            boolean table = false;
+            boolean handLexer = false;
+            boolean parallelLexer = false;
+            boolean pipeline = false;
+            String statsFormat = null;
             BufferedWriter bwTree = null;
             BufferedWriter bwLlvm = null;
             FileWriter fwTree = null;
-            FileReader codeSource = null;
-            try {
-                codeSource = new FileReader(args[args.length-1]);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            Path codeSource = Paths.get(args[args.length-1]);
             ParseTree parseTree = null;
             String tex="\\documentclass{standalone}\\begin{document}Parsing error, no tree produced.\\end{document}";
 
@@ -50,16 +107,102 @@ public class Main{
                 if (args[i].equals("-dr") || args[i].equals("--display-rules") ) {
                     fullOutput = true;
                 }
+                if (args[i].equals("-ns") || args[i].equals("--no-stdout")) {
+                    printLLVM = false;
+                }
+                if (args[i].equals("--ssa")) {
+                    ssa = true;
+                }
+                if (args[i].equals("--run")) {
+                    run = true;
+                }
+                if (args[i].equals("--jvm")) {
+                    jvm = true;
+                }
+                if (args[i].equals("--table")) {
+                    table = true;
+                }
+                if (args[i].equals("--hand-lexer")) {
+                    handLexer = true;
+                }
+                if (args[i].equals("--parallel-lexer")) {
+                    parallelLexer = true;
+                }
+                if (args[i].equals("--pipeline")) {
+                    pipeline = true;
+                }
+                if (args[i].equals("--stats") && i + 1 < args.length) {
+                    statsFormat = args[i + 1];
+                }
+            }
+            if (statsFormat != null && !statsFormat.equals("text") && !statsFormat.equals("json")) {
+                System.out.println("Error:> Unknown statistics format: " + statsFormat);
+                return;
             }
-            Parser parser = new Parser(codeSource);
-            if (fullOutput) {parser.displayFullRules();}
+            if (pipeline) {
+                // The measures and the trace are taken on this thread, and the tree is only built whole without the pipeline
+                List<String> unsupported = new ArrayList<>();
+                if (fullOutput) {unsupported.add("-dr");}
+                if (writeTree) {unsupported.add("-wt");}
+                if (statsFormat != null) {unsupported.add("--stats");}
+                if (run) {unsupported.add("--run");}
+                if (jvm) {unsupported.add("--jvm");}
+                if (table) {unsupported.add("--table");}
+                if (!unsupported.isEmpty()) {
+                    System.err.println("Warning:> --pipeline is not supported with " + String.join(", ", unsupported)
+                            + ", compiling without it");
+                    pipeline = false;
+                }
+            }
+            CompileStats stats = statsFormat == null ? null : new CompileStats();
+            if (stats != null) {stats.begin(CompileStats.Phase.LEXING);}
+            TokenSource lexer;
+            if (parallelLexer) {
+                int parallelism = Runtime.getRuntime().availableProcessors();
+                lexer = new ParallelLexer(new MappedFileReader(codeSource), parallelism);
+            } else if (handLexer) {
+                lexer = new HandWrittenLexer(new MappedFileReader(codeSource));
+            } else {
+                lexer = new LexicalAnalyzer(new MappedFileReader(codeSource));
+            }
+            if (stats != null) {
+                stats.end(CompileStats.Phase.LEXING);
+                lexer = stats.measure(lexer);
+            }
+            if (pipeline) {
+                compilePipelined(lexer, printLLVM);
+                return;
+            }
+            if (stats != null) {stats.begin(CompileStats.Phase.PARSING);}
+            Parser parser = new Parser(lexer, table);
+            if (fullOutput) {parser.setTrace(new RuleTrace(RECENT_RULES, RULE_SAMPLE_INTERVAL));}
+            CompactParseTree tree = null;
             try {
-                parseTree = parser.parse();
-                if (writeTree) {tex=parseTree.toLaTeX();};
+                tree = parser.parseCompact();
+                parseTree = tree.view(tree.getRoot());
+                if (writeTree) {
+                    if (stats != null) {stats.begin(CompileStats.Phase.TREE_OUTPUT);}
+                    try {
+                        tex=parseTree.toLaTeX();
+                    } finally {
+                        if (stats != null) {stats.end(CompileStats.Phase.TREE_OUTPUT);}
+                    }
+                }
             } catch (ParseException e) {
+                printTrace(parser.getTrace(), true);
                 System.out.println("Error:> " + e.getMessage());
             } catch (Exception e) {
+                printTrace(parser.getTrace(), true);
                 System.out.println("Error:> " + e);
+            } catch (StackOverflowError e) {
+                printTrace(parser.getTrace(), true);
+                System.out.println("Error:> Program too deeply nested");
+            }
+            if (tree != null) {printTrace(parser.getTrace(), false);}
+            if (stats != null) {
+                stats.end(CompileStats.Phase.PARSING);
+                if (tree != null) {stats.countNodes(tree);}
+                stats.begin(CompileStats.Phase.TREE_OUTPUT);
             }
             if (writeTree) {
                 try {
@@ -77,39 +220,216 @@ public class Main{
                     }
                 }
             }
-            String[] llvmResult;
+            if (stats != null) {stats.end(CompileStats.Phase.TREE_OUTPUT);}
+            if (parseTree == null) {
+                printStats(stats, statsFormat);
+                return;
+            }
+            if (run || jvm) {
+                try {
+                    runProgram(parseTree, jvm);
+                } catch (RuntimeException e) {
+                    System.out.println("Error:> " + e.getMessage());
+                } catch (StackOverflowError e) {
+                    System.out.println("Error:> Program too deeply nested");
+                }
+                printStats(stats, statsFormat);
+                return;
+            }
             try {
-                LLVMParser llvmParser = new LLVMParser();
-                llvmResult = llvmParser.generate(parseTree);
-                String code = llvmResult[1];
-                System.out.println(code);
-                if (fullLLVMOutput) {
+                LLVMParser llvmParser = new LLVMParser(ssa);
+                File file = new File("./dist/llvm_generated/" + LLVMParser.outputFileName(parseTree));
+                try {
+                    bwLlvm = new BufferedWriter(new FileWriter(file), LLVM_BUFFER_SIZE);
+                    generate(llvmParser, parseTree, bwLlvm, stats);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
                     try {
-                        String fileName = llvmResult[0];
-                        try {
-                            File file = new File("./dist/llvm_generated/" + fileName);
-                            bwLlvm = new BufferedWriter(new FileWriter(file));
-                            bwLlvm.write(code);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        } finally {
-                            try {
-                                if (bwLlvm != null) {
-                                    bwLlvm.close();
-                                }
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
+                        if (bwLlvm != null) {
+                            bwLlvm.close();
                         }
-                    } catch (RuntimeException e) {
+                    } catch (IOException e) {
                         e.printStackTrace();
                     }
                 }
+                if (printLLVM) {
+                    // Copy the generated file rather than keeping the module in memory
+                    Files.copy(file.toPath(), System.out);
+                    System.out.println();
+                }
             } catch (RuntimeException e) {
                 e.printStackTrace();
                 System.out.println("Error:> " + e.getMessage());
+            } catch (StackOverflowError e) {
+                System.out.println("Error:> Program too deeply nested");
+            }
+            printStats(stats, statsFormat);
+        }
+    }
+
+    /**
+     * Generates the LLVM code of a program, measured as the code generation phase if measures are taken.
+     *
+     * @param llvmParser The code generator.
+     * @param parseTree The parse tree of the program.
+     * @param output The destination of the LLVM code.
+     * @param stats The measures of the compilation, or null.
+     * @throws IOException If writing the LLVM code fails.
+     */
+    private static void generate(LLVMParser llvmParser, ParseTree parseTree, Appendable output, CompileStats stats)
+            throws IOException {
+        if (stats != null) {stats.begin(CompileStats.Phase.CODE_GENERATION);}
+        try {
+            llvmParser.generate(AstBuilder.lower(parseTree), output, stats);
+        } finally {
+            if (stats != null) {stats.end(CompileStats.Phase.CODE_GENERATION);}
+        }
+    }
+
+    /**
+     * Prints the measures of the compilation to the standard error, if measures are taken.
+     *
+     * @param stats The measures, or null.
+     * @param format The format of the report: text or json.
+     */
+    private static void printStats(CompileStats stats, String format) {
+        if (stats == null) {
+            return;
+        }
+        System.err.flush();
+        System.err.print(format.equals("json") ? stats.toJson() + System.lineSeparator() : stats.toText());
+        System.err.flush();
+    }
+
+    /**
+     * Prints the rules applied by the parser, if they are traced.
+     *
+     * @param trace The trace of the rules, or null.
+     * @param failed Whether the parsing failed, to also print the last rules applied before the error.
+     */
+    private static void printTrace(RuleTrace trace, boolean failed) {
+        if (trace == null) {
+            return;
+        }
+        System.out.print(trace.formatCounts());
+        if (failed) {
+            System.out.println("Last rules applied:");
+            System.out.print(trace.formatRecent(true));
+        }
+    }
+
+    /**
+     * Compiles a program with the lexer, the parser and the code generator on three threads, and prints the LLVM code
+     * written to dist/llvm_generated, which is in SSA form, or the error.
+     *
+     * @param lexer The lexer of the program.
+     * @param printLLVM Whether to print the LLVM code.
+     * @throws IOException If the LLVM code cannot be printed.
+     */
+    private static void compilePipelined(TokenSource lexer, boolean printLLVM) throws IOException {
+        Path file;
+        try {
+            file = new PipelinedCompiler(Paths.get("./dist/llvm_generated")).compile(lexer);
+        } catch (ParseException e) {
+            System.out.println("Error:> " + e.getMessage());
+            return;
+        } catch (Exception e) {
+            System.out.println("Error:> " + e);
+            return;
+        } catch (StackOverflowError e) {
+            System.out.println("Error:> Program too deeply nested");
+            return;
+        }
+        if (printLLVM) {
+            Files.copy(file, System.out);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Compiles many GILLES files in parallel, on as many threads as there are processors, and prints a summary.
+     *
+     * @param inputs The files, directories and glob patterns designating the GILLES files.
+     * @param ssa Whether to generate the code in SSA form.
+     * @throws IOException If a directory cannot be read or the output directory cannot be created.
+     * @throws InterruptedException If interrupted while waiting for the files.
+     */
+    private static void compileBatch(List<String> inputs, boolean ssa) throws IOException, InterruptedException {
+        List<Path> sources;
+        try {
+            sources = BatchCompiler.findSources(inputs);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error:> " + e.getMessage());
+            return;
+        }
+        BatchCompiler compiler = new BatchCompiler(Paths.get("./dist/llvm_generated"), ssa,
+                Runtime.getRuntime().availableProcessors());
+        System.out.print(compiler.compile(sources));
+    }
+
+    /**
+     * Starts a compile server, after warming it up on the test programs if they are found.
+     *
+     * @param socket The path of the Unix domain socket to listen on.
+     * @throws IOException If the socket cannot be opened.
+     */
+    private static void startServer(Path socket) throws IOException {
+        CompileServer server = new CompileServer(socket);
+        Path tests = Paths.get("test");
+        if (Files.isDirectory(tests)) {
+            server.warmUp(BatchCompiler.findSources(List.of(tests.toString())), 20);
+        }
+        System.out.println("Listening on " + socket);
+        server.serve();
+    }
+
+    /**
+     * Compiles a program with a compile server and prints the LLVM code, or the error.
+     *
+     * @param socket The path of the Unix domain socket of the server.
+     * @param file The GILLES file, or - to send the standard input.
+     * @param ssa Whether to generate the code in SSA form.
+     * @throws IOException If the server cannot be reached or the standard input cannot be read.
+     */
+    private static void compileWithServer(Path socket, String file, boolean ssa) throws IOException {
+        try (CompileClient client = new CompileClient(socket)) {
+            CompileClient.Result result = file.equals("-")
+                    ? client.compileSource(new String(System.in.readAllBytes()), ssa)
+                    : client.compilePath(Paths.get(file), ssa);
+            System.err.print(result.warnings());
+            if (result.success()) {
+                System.out.println(result.text());
+            } else {
+                System.out.println("Error:> " + result.text());
+            }
+        }
+    }
+
+    /**
+     * Runs a program, reading from the standard input and printing to the standard output.
+     *
+     * @param parseTree The parse tree of the program.
+     * @param jvm Whether to compile the program to JVM bytecode rather than to run it with the interpreter.
+     * The interpreter is still used if the program is too large for a JVM method.
+     * @throws IOException If reading or printing fails.
+     */
+    private static void runProgram(ParseTree parseTree, boolean jvm) throws IOException {
+        ProgramIO io = new ProgramIO(System.in, System.out);
+        if (jvm) {
+            JvmCompiler compiler = new JvmCompiler();
+            byte[] classFile = null;
+            try {
+                classFile = compiler.compile(parseTree);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Warning:> " + e.getMessage() + ", running it with the interpreter");
+            }
+            if (classFile != null) {
+                JvmCompiler.run(compiler.getClassName(), classFile, io);
+                return;
             }
         }
+        new BytecodeInterpreter(io).run(new BytecodeCompiler().compile(parseTree));
     }
 
     /** Default constructor (should not be used) */
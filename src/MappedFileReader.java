@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A Reader of a file mapped in memory, decoding its bytes into the buffer of the reader's caller without reading the
+ * file through a stream.
+ *
+ * With a charset in which the ASCII characters are single bytes, the bytes are copied in chunks and widened to
+ * characters until the first byte which is not ASCII; from there on, and for the other charsets, a decoder reads the
+ * mapped bytes. As with a FileReader, malformed and unmappable input is replaced rather than reported.
+ */
+public class MappedFileReader extends Reader {
+    /**
+     * The charsets in which a byte below 0x80 always is the ASCII character of the same code.
+     */
+    private static final Set<Charset> ASCII_COMPATIBLE = Set.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII,
+            StandardCharsets.ISO_8859_1);
+
+    /**
+     * Size (in bytes) of the chunks copied from the mapping to be widened.
+     */
+    private static final int SCRATCH_SIZE = 8192;
+
+    private final ByteBuffer bytes;
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+    private final CharsetDecoder decoder;
+    /**
+     * Whether the bytes left are read by the decoder rather than widened.
+     */
+    private boolean decoding;
+    /**
+     * Whether the decoder has been flushed at the end of the input.
+     */
+    private boolean finished;
+    /**
+     * The character decoded but not returned yet when a single one was asked for, or -1.
+     */
+    private int leftover = -1;
+
+    /**
+     * Maps a file decoded with the default charset, as a FileReader does.
+     *
+     * @param path the file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public MappedFileReader(Path path) throws IOException {
+        this(path, Charset.defaultCharset());
+    }
+
+    /**
+     * Maps a file.
+     *
+     * @param path the file.
+     * @param charset the charset of the file.
+     * @throws IOException if the file cannot be opened or mapped, or is larger than 2 GB.
+     */
+    public MappedFileReader(Path path, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to be mapped: " + path);
+            }
+            // The mapping stays valid once the channel is closed
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoding = !ASCII_COMPATIBLE.contains(charset);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, buffer.length);
+        if (length == 0) {
+            return 0;
+        }
+        if (leftover >= 0) {
+            buffer[offset] = (char) leftover;
+            leftover = -1;
+            return 1;
+        }
+        if (!decoding) {
+            int available = Math.min(bytes.remaining(), Math.min(length, SCRATCH_SIZE));
+            bytes.get(bytes.position(), scratch, 0, available);
+            int count = 0;
+            while (count < available && scratch[count] >= 0) {
+                buffer[offset + count] = (char) scratch[count];
+                count++;
+            }
+            bytes.position(bytes.position() + count);
+            if (count > 0) {
+                return count;
+            }
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            decoding = true;
+        }
+        if (length == 1) {
+            // A character may take two chars, which the decoder only writes together
+            char[] pair = new char[2];
+            int count = read(pair, 0, 2);
+            if (count == 2) {
+                leftover = pair[1];
+            }
+            buffer[offset] = pair[0];
+            return count < 0 ? -1 : 1;
+        }
+        return decode(CharBuffer.wrap(buffer, offset, length));
+    }
+
+    /**
+     * Decodes the bytes left into a buffer, flushing the decoder at the end of the input.
+     *
+     * @param out the buffer to decode into, of at least two chars.
+     * @return the number of chars decoded, or -1 at the end of the input.
+     */
+    private int decode(CharBuffer out) {
+        if (finished) {
+            return -1;
+        }
+        int start = out.position();
+        CoderResult result = decoder.decode(bytes, out, true);
+        if (result.isUnderflow()) {
+            finished = decoder.flush(out).isUnderflow();
+        }
+        int count = out.position() - start;
+        return count == 0 && finished ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+        // The mapping is released when the buffer is garbage collected
+    }
+}
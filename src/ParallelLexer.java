@@ -0,0 +1,358 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A lexer of a text in memory which lexes parts of it on several threads, recording the tokens of the parts in order
+ * as one {@link HandWrittenLexer} lexing the whole text would.
+ *
+ * The text is cut into chunks ending with a line feed, so that no token but a long comment crosses a cut. Whether a
+ * chunk starts inside a long comment depends on all the text before it, so the chunks are first scanned in parallel
+ * for the comments only, once as starting outside a comment and once as starting inside one, counting their lines on
+ * the way. The state and the first line of each chunk then follow in order from the start of the text, and the chunks
+ * are lexed in parallel, a few ahead of the one being read, each into buffers of its own. The names of a chunk are
+ * interned again in the buffer of the reader as its tokens are read.
+ *
+ * The warnings of a chunk are printed when its first token is read, and an error stops the tokens where the lexing of
+ * the whole text would have stopped.
+ */
+public class ParallelLexer implements TokenSource {
+    /**
+     * Size (in characters) of the chunks, which are extended to the end of a line.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+    /**
+     * Capacity (in tokens) of the buffers a chunk is lexed into.
+     */
+    private static final int CHUNK_BUFFER_SIZE = 1 << 14;
+
+    /**
+     * A lexed chunk.
+     *
+     * @param buffers The tokens of the chunk.
+     * @param warnings The warnings of the chunk.
+     * @param error The error which stopped the lexing of the chunk, or null.
+     */
+    private record Chunk(List<TokenBuffer> buffers, String warnings, RuntimeException error) {
+    }
+
+    private final char[] text;
+    private final int length;
+    private final ExecutorService pool;
+    /**
+     * The number of chunks lexed ahead of the one being read.
+     */
+    private final int window;
+    /**
+     * The index of the first character of each chunk, followed by the length of the text.
+     */
+    private final int[] starts;
+    /**
+     * The line of the first character of each chunk.
+     */
+    private final int[] lines;
+    /**
+     * Whether each chunk starts inside a long comment.
+     */
+    private final boolean[] inComment;
+    private final ArrayDeque<Future<Chunk>> lexing = new ArrayDeque<>();
+    /**
+     * The index of the next chunk to submit for lexing.
+     */
+    private int nextChunk;
+
+    private Chunk chunk;
+    /**
+     * The index in the chunk of the buffer being read.
+     */
+    private int bufferIndex;
+    private TokenBuffer tokens;
+    /**
+     * The index of the next token to read in the buffer.
+     */
+    private int token;
+    /**
+     * The index of each name of the buffer being read in the buffer of the reader, or -1 if not interned yet.
+     */
+    private int[] names = new int[0];
+
+    /**
+     * Reads a whole input and prepares its lexing.
+     *
+     * @param reader the input.
+     * @param parallelism the number of threads lexing the chunks.
+     * @throws IOException if reading the input fails.
+     */
+    public ParallelLexer(Reader reader, int parallelism) throws IOException {
+        this(readAll(reader), parallelism);
+    }
+
+    /**
+     * Prepares the lexing of a text, scanning its chunks in parallel.
+     *
+     * @param text the text, which is read in place and should not change.
+     * @param parallelism the number of threads lexing the chunks.
+     * @throws IOException if interrupted while scanning the chunks.
+     */
+    public ParallelLexer(CharSequence text, int parallelism) throws IOException {
+        this.text = text instanceof CharArray array ? array.array() : text.toString().toCharArray();
+        this.length = text.length();
+        this.pool = Executors.newWorkStealingPool(parallelism);
+        this.window = 2 * parallelism;
+        this.starts = cut(this.text, length);
+        int chunks = starts.length - 1;
+        lines = new int[chunks];
+        inComment = new boolean[chunks];
+        List<Callable<int[]>> scans = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int start = starts[i];
+            int end = starts[i + 1];
+            scans.add(() -> scan(this.text, start, end));
+        }
+        try {
+            List<Future<int[]>> results = pool.invokeAll(scans);
+            for (int i = 1; i < chunks; i++) {
+                int[] previous = results.get(i - 1).get();
+                lines[i] = lines[i - 1] + previous[0];
+                inComment[i] = previous[inComment[i - 1] ? 2 : 1] == 1;
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning the chunks");
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException(e.getCause());
+        }
+        while (nextChunk < chunks && lexing.size() < window) {
+            submit();
+        }
+    }
+
+    /**
+     * A text held in an array, to be lexed without copying it.
+     *
+     * @param array the characters, of which the text is the first ones.
+     * @param length the length of the text.
+     */
+    private record CharArray(char[] array, int length) implements CharSequence {
+        @Override
+        public char charAt(int index) {
+            return array[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(array, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(array, 0, length);
+        }
+    }
+
+    /**
+     * Reads a whole input into an array.
+     *
+     * @param reader the input.
+     * @return the text of the input.
+     * @throws IOException if reading the input fails.
+     */
+    private static CharArray readAll(Reader reader) throws IOException {
+        char[] chars = new char[1 << 16];
+        int length = 0;
+        int read;
+        while ((read = reader.read(chars, length, chars.length - length)) >= 0) {
+            length += read;
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * chars.length);
+            }
+        }
+        return new CharArray(chars, length);
+    }
+
+    /**
+     * Cuts a text into chunks of about {@link #CHUNK_SIZE} characters, each but the last ending with a line feed.
+     *
+     * @return the index of the first character of each chunk, followed by the length of the text.
+     */
+    private static int[] cut(char[] text, int length) {
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        do {
+            starts.add(start);
+            int end = (int) Math.min(length, (long) start + CHUNK_SIZE);
+            while (end < length && text[end - 1] != '\n') {
+                end++;
+            }
+            start = end;
+        } while (start < length);
+        starts.add(length);
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Scans a chunk for its long comments and its lines.
+     *
+     * @return the number of lines the chunk ends, then 1 if the chunk ends inside a long comment when starting
+     * outside of one, and 1 if it does when starting inside one, 0 otherwise.
+     */
+    private static int[] scan(char[] text, int start, int end) {
+        int lines = 0;
+        boolean afterReturn = false;
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            if (c > '\r' && c < '\u0085') {
+                // Most characters end no line
+                afterReturn = false;
+                continue;
+            }
+            switch (c) {
+                case '\u000B', '\u000C', '\u0085', '\u2028', '\u2029' -> {
+                    lines++;
+                    afterReturn = false;
+                }
+                case '\r' -> {
+                    lines++;
+                    afterReturn = true;
+                }
+                case '\n' -> {
+                    if (!afterReturn) {
+                        lines++;
+                    }
+                    afterReturn = false;
+                }
+                default -> afterReturn = false;
+            }
+        }
+        return new int[] {lines, endsInComment(text, start, end, false) ? 1 : 0,
+                endsInComment(text, start, end, true) ? 1 : 0};
+    }
+
+    /**
+     * Returns whether a chunk ends inside a long comment. Only the characters which open or close a comment are
+     * looked at, since no other token contains them.
+     *
+     * @param inComment whether the chunk starts inside a long comment.
+     */
+    private static boolean endsInComment(char[] text, int start, int end, boolean inComment) {
+        boolean inLineComment = false;
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            if (inLineComment) {
+                inLineComment = c != '\n' && c != '\r';
+            } else if (c == '!') {
+                if (i + 1 < end && text[i + 1] == '!') {
+                    inComment = !inComment;
+                    i++;
+                }
+            } else if (c == '$' && !inComment) {
+                inLineComment = true;
+            }
+        }
+        return inComment;
+    }
+
+    /**
+     * Submits the next chunk for lexing.
+     */
+    private void submit() {
+        int index = nextChunk++;
+        boolean last = nextChunk == starts.length - 1;
+        lexing.add(pool.submit(() -> lex(index, last)));
+        if (last) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lexes a chunk.
+     */
+    private Chunk lex(int index, boolean last) {
+        StringBuilder warnings = new StringBuilder();
+        HandWrittenLexer lexer = new HandWrittenLexer(text, starts[index], starts[index + 1], last, lines[index],
+                inComment[index], warnings);
+        List<TokenBuffer> buffers = new ArrayList<>();
+        TokenBuffer buffer;
+        do {
+            buffer = new TokenBuffer(CHUNK_BUFFER_SIZE);
+            buffers.add(buffer);
+            try {
+                lexer.fill(buffer);
+            } catch (IOException e) {
+                // Not thrown when lexing a text in memory
+                throw new IllegalStateException(e);
+            } catch (RuntimeException e) {
+                return new Chunk(buffers, warnings.toString(), e);
+            }
+        } while (buffer.isFull() && buffer.getType(buffer.size() - 1) != LexicalUnit.EOS);
+        return new Chunk(buffers, warnings.toString(), null);
+    }
+
+    @Override
+    public void fill(TokenBuffer buffer) throws IOException {
+        while (!buffer.isFull()) {
+            while (tokens == null || token == tokens.size()) {
+                nextBuffer();
+            }
+            LexicalUnit type = tokens.getType(token);
+            int value = tokens.getValue(token);
+            if (type == LexicalUnit.VARNAME || type == LexicalUnit.PROGNAME) {
+                if (names[value] < 0) {
+                    names[value] = buffer.intern(tokens.getName(value));
+                }
+                value = names[value];
+            }
+            buffer.add(type, tokens.getOffset(token), tokens.getLine(token) - 1, tokens.getColumn(token), value);
+            if (type == LexicalUnit.EOS) {
+                // The EOS token is recorded again by each call
+                return;
+            }
+            token++;
+        }
+    }
+
+    /**
+     * Moves to the next buffer of tokens, waiting for the next chunk to be lexed if the current one has been read.
+     *
+     * @throws RuntimeException the error which stopped the lexing of the current chunk, once its tokens are read.
+     */
+    private void nextBuffer() throws IOException {
+        if (chunk != null && bufferIndex + 1 < chunk.buffers().size()) {
+            bufferIndex++;
+        } else {
+            if (chunk != null && chunk.error() != null) {
+                throw chunk.error();
+            }
+            try {
+                chunk = lexing.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while lexing");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            if (nextChunk < starts.length - 1) {
+                submit();
+            }
+            System.err.print(chunk.warnings());
+            bufferIndex = 0;
+        }
+        tokens = chunk.buffers().get(bufferIndex);
+        token = 0;
+        if (names.length < tokens.getNameCount()) {
+            names = new int[tokens.getNameCount()];
+        }
+        Arrays.fill(names, 0, tokens.getNameCount(), -1);
+    }
+}
@@ -22,6 +22,13 @@ public class ParseTree {
      */
     private List<ParseTree> children;
 
+    /**
+     * Creates a tree whose label and children are given by overriding {@link #getLabel()} and {@link #getChildren()},
+     * such as the views of a {@link CompactParseTree}.
+     */
+    protected ParseTree() {
+    }
+
     /**
      * Creates a singleton tree with only a root labeled by lbl.
      * 
@@ -38,7 +45,7 @@ public class ParseTree {
      * @param lbl The label of the root
      */
     public ParseTree(LexicalUnit lbl) {
-        this.label = new Symbol(lbl);
+        this.label = Symbol.of(lbl);
         this.children = new ArrayList<ParseTree>(); // This tree has no children
     }
     
@@ -48,7 +55,7 @@ public class ParseTree {
      * @param lbl The label of the root
      */
     public ParseTree(NonTerminal lbl) {
-        this.label = new Symbol(null,lbl);
+        this.label = Symbol.of(lbl);
         this.children = new ArrayList<ParseTree>(); // This tree has no children
     }
 
@@ -69,7 +76,7 @@ public class ParseTree {
      * @param chdn Its children
      */
     public ParseTree(LexicalUnit lbl, List<ParseTree> chdn) {
-        this.label = new Symbol(lbl);
+        this.label = Symbol.of(lbl);
         this.children = chdn;
     }
     /**
@@ -79,7 +86,7 @@ public class ParseTree {
      * @param chdn Its children
      */
     public ParseTree(NonTerminal lbl, List<ParseTree> chdn) {
-        this.label = new Symbol(null,lbl);
+        this.label = Symbol.of(lbl);
         this.children = chdn;
     }
 
@@ -92,10 +99,10 @@ public class ParseTree {
     public String toLaTexTree() {
         StringBuilder treeTeX = new StringBuilder();
         treeTeX.append("[");
-        treeTeX.append("{" + label.toTexString() + "}");   // Implement this yourself in Symbol.java
+        treeTeX.append("{" + getLabel().toTexString() + "}");   // Implement this yourself in Symbol.java
         treeTeX.append(" ");
 
-        for (ParseTree child : children) {
+        for (ParseTree child : getChildren()) {
             treeTeX.append(child.toLaTexTree());
         }
         treeTeX.append("]");
@@ -140,9 +147,9 @@ public class ParseTree {
     public String toTikZ() {
         StringBuilder treeTikZ = new StringBuilder();
         treeTikZ.append("node {");
-        treeTikZ.append(label.toTexString());  // Implement this yourself in Symbol.java
+        treeTikZ.append(getLabel().toTexString());  // Implement this yourself in Symbol.java
         treeTikZ.append("}\n");
-        for (ParseTree child : children) {
+        for (ParseTree child : getChildren()) {
             treeTikZ.append("child { ");
             treeTikZ.append(child.toTikZ());
             treeTikZ.append(" }\n");
@@ -198,6 +205,21 @@ public class ParseTree {
         return this.toLaTeXusingForest();
     }
 
+    /**
+     * Dispatches this node to the given visitor according to the type of its label.
+     *
+     * @param <R> the type of the result of the visit.
+     * @param visitor the visitor to call.
+     * @return the result of the visit.
+     */
+    public <R> R accept(ParseTreeVisitor<R> visitor) {
+        Symbol label = getLabel();
+        if (label.isTerminal()) {
+            return visitor.visitTerminal(label.getType(), label.getValue(), this);
+        }
+        return visitor.visitNonTerminal((NonTerminal) label.getValue(), this);
+    }
+
     public Symbol getLabel() {
         return label;
     }
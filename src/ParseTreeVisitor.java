@@ -0,0 +1,29 @@
+/**
+ * A visitor over parse trees.
+ *
+ * The dispatch is done on the label of each node: non-terminal nodes are given with their {@link NonTerminal} and
+ * terminal leaves with their {@link LexicalUnit} and value, so that visitors can switch on the enums directly instead
+ * of inspecting the string representation of the {@link Symbol}.
+ *
+ * @param <R> the type of the result produced when visiting a node.
+ */
+public interface ParseTreeVisitor<R> {
+    /**
+     * Visits a node labelled by a non-terminal.
+     *
+     * @param variable the non-terminal labelling the node.
+     * @param node the visited node.
+     * @return the result of the visit.
+     */
+    R visitNonTerminal(NonTerminal variable, ParseTree node);
+
+    /**
+     * Visits a node labelled by a terminal.
+     *
+     * @param unit the LexicalUnit labelling the node.
+     * @param value the value attached to the terminal (may be null).
+     * @param node the visited node.
+     * @return the result of the visit.
+     */
+    R visitTerminal(LexicalUnit unit, Object value, ParseTree node);
+}
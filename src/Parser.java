@@ -1,12 +1,15 @@
 import java.util.List;
-import java.io.FileReader;
+import java.io.Reader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 /**
  * Parser for GILLES.
  * 
  * The parser implements a recursive descent mimicking the run of the pushdown automaton: the call stack replacing the automaton stack.
+ * It can instead run the pushdown automaton itself, with the rules of the {@link LL1Table} and an explicit stack, so that
+ * the depth of nesting is only bounded by the heap. Both engines build the same trees and raise the same errors.
  * 
  * @author Mrudula Balachander, inspired from earlier versions of the project (exact authors not determined).
  *
@@ -15,95 +18,172 @@ public class Parser{
     /**
      * Lexer object for the parsed file.
      */
-    private LexicalAnalyzer scanner;
+    private final TokenSource scanner;
     /**
-     * Current symbol at the head of the word to be read. This corresponds to the look-ahead (of length 1).
+     * Tokens read ahead from the lexer, the buffer being filled again once the parser has read all of them.
      */
-    private Symbol current;
+    private final TokenBuffer tokens=new TokenBuffer(tokenBufferSize);
     /**
-     * Option to print only the rule number (false) or the full rule (true).
+     * Index in the buffer of the current symbol at the head of the word to be read. This corresponds to the look-ahead (of length 1).
      */
-    private boolean fullRuleDisplay=false;
+    private int current;
     /**
-     * Width (in characters) of the widest left handside in a production rule.
+     * Error of the lexer on the token following the last one in the buffer, thrown when the parser reaches it.
      */
-    private static final int widestNonTerm=13; // <Instruction>
+    private Exception lexingError;
     /**
-     * Width (in characters) of the highest rule number.
+     * Trace of the rules applied, or null if they are not traced.
      */
-    private static final int log10ruleCard=2; // 35 rules
+    private RuleTrace trace;
+    /**
+     * Initial capacity of the stack of the table-driven engine, which grows as needed.
+     */
+    private static final int initialStackSize=64;
+    /**
+     * Capacity (in tokens) of the buffer of tokens read ahead.
+     */
+    private static final int tokenBufferSize=1024;
+    /**
+     * Initial capacity (in nodes) of the tree, which grows as needed.
+     */
+    private static final int initialTreeSize=64;
+    /**
+     * The tree being built.
+     */
+    private CompactParseTree tree;
+    /**
+     * The slot in the symbol table of the tree of each name of the buffer of tokens, or -1 if not registered yet, so
+     * that matching a variable seen before is an array access.
+     */
+    private int[] slots=new int[0];
+    /**
+     * Whether to parse with the table-driven engine rather than by recursive descent.
+     */
+    private final boolean tableDriven;
+    /**
+     * The terminals and the variables, by ordinal, to decode the symbols of the table-driven engine.
+     */
+    private static final LexicalUnit[] terminals=LexicalUnit.values();
+    private static final NonTerminal[] variables=NonTerminal.values();
 
     /**
-     * Creates a Parser object for the provided file and initialized the look-ahead.
+     * Creates a Parser object for the provided source and initialized the look-ahead.
      * 
-     * @param source a FileReader object for the parsed file.
+     * @param source a Reader object for the parsed file or text.
      * @throws IOException in case the lexing fails (syntax error).
      */
-    public Parser(FileReader source) throws IOException{
-        this.scanner = new LexicalAnalyzer(source);
-        this.current = scanner.nextToken();
+    public Parser(Reader source) throws IOException{
+        this(source,false);
     }
-    
-    /* Display of the rules */
+
     /**
-     * Returns a string of several spaces.
+     * Creates a Parser object for the provided source and initialized the look-ahead.
      * 
-     * @param n the number of spaces.
-     * @return a String containing n spaces.
+     * @param source a Reader object for the parsed file or text.
+     * @param tableDriven whether to parse with the LL(1) table and an explicit stack (true) or by recursive descent (false).
+     * @throws IOException in case the lexing fails (syntax error).
+     */
+    public Parser(Reader source, boolean tableDriven) throws IOException{
+        this(new LexicalAnalyzer(source),tableDriven);
+    }
+
+    /**
+     * Creates a Parser object for the provided file, mapped in memory, and initialized the look-ahead.
+     * 
+     * @param source the path of the parsed file, decoded with the default charset as by a FileReader.
+     * @throws IOException in case the file cannot be read or the lexing fails (syntax error).
+     */
+    public Parser(Path source) throws IOException{
+        this(source,false);
+    }
+
+    /**
+     * Creates a Parser object for the provided file, mapped in memory, and initialized the look-ahead.
+     * 
+     * @param source the path of the parsed file, decoded with the default charset as by a FileReader.
+     * @param tableDriven whether to parse with the LL(1) table and an explicit stack (true) or by recursive descent (false).
+     * @throws IOException in case the file cannot be read or the lexing fails (syntax error).
      */
-    private static String multispace(int n) {
-        String res="";
-        for (int i=0;i<n;i++) {
-            res+=" ";
-        };
-        return res;
+    public Parser(Path source, boolean tableDriven) throws IOException{
+        this(new MappedFileReader(source),tableDriven);
+    }
+
+    /**
+     * Creates a Parser object for the provided text and initialized the look-ahead.
+     * 
+     * @param source the parsed text, which should not change while it is parsed.
+     * @throws IOException in case the lexing fails (syntax error).
+     */
+    public Parser(CharSequence source) throws IOException{
+        this(source,false);
+    }
+
+    /**
+     * Creates a Parser object for the provided text and initialized the look-ahead.
+     * 
+     * @param source the parsed text, which should not change while it is parsed.
+     * @param tableDriven whether to parse with the LL(1) table and an explicit stack (true) or by recursive descent (false).
+     * @throws IOException in case the lexing fails (syntax error).
+     */
+    public Parser(CharSequence source, boolean tableDriven) throws IOException{
+        this(new CharSequenceReader(source),tableDriven);
+    }
+
+    /**
+     * Creates a Parser object reading the tokens of the provided lexer and initialized the look-ahead.
+     * 
+     * @param source the lexer of the parsed file or text.
+     * @param tableDriven whether to parse with the LL(1) table and an explicit stack (true) or by recursive descent (false).
+     * @throws IOException in case the lexing fails (syntax error).
+     */
+    public Parser(TokenSource source, boolean tableDriven) throws IOException{
+        this.scanner = source;
+        this.tableDriven = tableDriven;
+        fill();
     }
     
+    /* Trace of the rules */
     /**
-     * Outputs the rule used in the LL descent.
+     * Records the rule used in the LL descent in the trace, if any. The text of the rule is not used: the trace
+     * takes it from the {@link LL1Table} when dumped.
      * 
      * @param rNum the rule number.
      * @param ruleLhs the left hand-side of the rule as a String.
      * @param ruleRhs the right hand-side of the rule as a String.
-     * @param full a boolean specifying whether to write only the rule number (false) or the full rule (true).
-     */
-    private static void ruleOutput(int rNum, String ruleLhs,String ruleRhs, boolean full) {
-        if (full) {
-            System.out.println("   ["+rNum+"]"+
-                multispace(1+log10ruleCard-String.valueOf(rNum).length())+ // Align left hand-sides regardless of number of digits in rule number
-                ruleLhs+multispace(2+widestNonTerm-ruleLhs.length())+ // Align right hand-sides regardless of length of the left hand-side
-                "→  "+ruleRhs);
-        } else {
-            System.out.print(rNum+" ");
+     */
+    private void ruleOutput(int rNum, String ruleLhs,String ruleRhs) {
+        if (trace!=null) {
+            trace.apply(rNum);
         }
     }
     
     /**
-     * Outputs the rule used in the LL descent, using the fullRuleDisplay value to set the option of full display or not.
-     *
-     * Made a no-op for part 3 since we don't want to display the rules!
+     * Records a rule of the {@link LL1Table} used by the table-driven engine, like {@link #ruleOutput(int,String,String)}.
      * 
-     * @param rNum the rule number.
-     * @param ruleLhs the left hand-side of the rule as a String.
-     * @param ruleRhs the right hand-side of the rule as a String.
+     * @param rule the rule.
      */
-    private void ruleOutput(int rNum, String ruleLhs,String ruleRhs) {
-        // ruleOutput(rNum,ruleLhs,ruleRhs,this.fullRuleDisplay);
-        // Noop for now since we don't want to display the rules!
+    private void ruleOutput(LL1Table.Rule rule) {
+        if (trace!=null) {
+            trace.apply(rule.number());
+        }
     }
     
     /**
-     * Sets the display option to "Full rules".
+     * Sets the trace recording the rules applied by the next parses.
+     * 
+     * @param trace the trace, or null to stop tracing.
      */
-    public void displayFullRules() {
-        this.fullRuleDisplay=true;
+    public void setTrace(RuleTrace trace) {
+        this.trace=trace;
     }
     
     /**
-     * Sets the display option to "Rule numbers only".
+     * Returns the trace recording the rules applied by the parses.
+     * 
+     * @return the trace, or null if the rules are not traced.
      */
-    public void displayRuleNumbers() {
-        this.fullRuleDisplay=false;
+    public RuleTrace getTrace() {
+        return trace;
     }
 
     /* Matching of terminals */
@@ -113,7 +193,36 @@ public class Parser{
      * @throws IOException in case the lexing fails (syntax error).
      */
     private void consume() throws IOException{
-        current = scanner.nextToken();
+        current++;
+        if (current == tokens.size()) {
+            fill();
+        }
+    }
+
+    /**
+     * Fills the buffer with the next tokens, the look-ahead becoming the first of them.
+     * 
+     * An error of the lexer is only thrown once the parser has read the tokens before it, as when lexing one token
+     * at a time.
+     * 
+     * @throws IOException in case the lexing fails (syntax error).
+     */
+    private void fill() throws IOException{
+        if (lexingError instanceof IOException e) {
+            throw e;
+        } else if (lexingError != null) {
+            throw (RuntimeException) lexingError;
+        }
+        tokens.clear();
+        current = 0;
+        try {
+            scanner.fill(tokens);
+        } catch (IOException | RuntimeException e) {
+            if (tokens.size() == 0) {
+                throw e;
+            }
+            lexingError = e;
+        }
     }
 
     /**
@@ -122,33 +231,207 @@ public class Parser{
      * @param token then LexicalUnit (terminal) to be matched.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the matching fails (syntax error): the next tolen is not the one to be matched.
-     * @return a ParseTree made of a single leaf (the matched terminal).
+     * @return the leaf of the matched terminal in the tree being built.
      */
-    private ParseTree match(LexicalUnit token) throws IOException, ParseException{
-        if(!current.getType().equals(token)){
+    private int match(LexicalUnit token) throws IOException, ParseException{
+        if(tokens.getType(current)!=token){
             // There is a parsing error
-            throw new ParseException(current, Arrays.asList(token));
+            throw new ParseException(tokens.toSymbol(current), Arrays.asList(token));
         }
         else {
-            Symbol cur = current;
+            int leaf = tree.terminal(tokens, current);
             consume();
-            return new ParseTree(cur);
+            return leaf;
+        }
+    }
+    
+    /**
+     * Matches a [VarName] from the head of the word, registering the variable in the symbol table of the tree.
+     * 
+     * @param definition whether the variable is defined (assigned or read by IN) rather than used.
+     * @throws IOException in case the lexing fails (syntax error).
+     * @throws ParseException in case the matching fails (syntax error): the next token is not a [VarName].
+     * @return the leaf of the matched variable in the tree being built.
+     */
+    private int matchVariable(boolean definition) throws IOException, ParseException{
+        if(tokens.getType(current)!=LexicalUnit.VARNAME){
+            // There is a parsing error
+            throw new ParseException(tokens.toSymbol(current), Arrays.asList(LexicalUnit.VARNAME));
+        }
+        int name = tokens.getValue(current);
+        if (name >= slots.length) {
+            int known = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(name + 1, 2 * known));
+            Arrays.fill(slots, known, slots.length, -1);
+        }
+        SymbolTable symbols = tree.getSymbols();
+        if (slots[name] < 0) {
+            slots[name] = symbols.add(tokens.getName(name));
         }
+        int slot = slots[name];
+        if (definition) {
+            symbols.define(slot);
+        } else {
+            symbols.use(slot);
+        }
+        int leaf = tree.variable(tokens, current, slot);
+        consume();
+        return leaf;
+    }
+
+    /**
+     * Starts a new tree, with a new symbol table.
+     */
+    private void newTree(){
+        tree = new CompactParseTree(initialTreeSize);
+        Arrays.fill(slots, -1);
     }
     
     /* Applying grammar rules */
     /**
      * Parses the file.
      * 
-     * @return a ParseTree containing the parsed file structured by the grammar rules.
+     * @return a ParseTree containing the parsed file structured by the grammar rules, as a view of a {@link CompactParseTree}.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
     public ParseTree parse() throws IOException, ParseException{
+        CompactParseTree result = parseCompact();
+        return result.view(result.getRoot());
+    }
+
+    /**
+     * Parses the file into a compact tree.
+     * 
+     * @return a CompactParseTree containing the parsed file structured by the grammar rules.
+     * @throws IOException in case the lexing fails (syntax error).
+     * @throws ParseException in case the parsing fails (syntax error).
+     */
+    public CompactParseTree parseCompact() throws IOException, ParseException{
+        newTree();
         // Program is the initial symbol of the grammar
-        ParseTree pt = program();
-        if (!this.fullRuleDisplay) {System.out.println();} // New line at the end of list of rules
-        return pt;
+        int root = tableDriven ? parseWithTable() : program();
+        tree.finish(root);
+        return tree;
+    }
+
+    /**
+     * Parses the head of the file, <code>LET [ProgName] BE</code>, so that its instructions are then parsed one at a
+     * time by {@link #parseInstruction()} instead of into one tree by {@link #parse()}. The instructions are always
+     * parsed by recursive descent.
+     * 
+     * @return the name of the program.
+     * @throws IOException in case the lexing fails (syntax error).
+     * @throws ParseException in case the parsing fails (syntax error).
+     */
+    public String parseHead() throws IOException, ParseException{
+        newTree();
+        // [1] <Program>  ->  begin <Code> end
+        ruleOutput(1,"<Program>","LET [ProgName] BE <Code> END");
+        match(LexicalUnit.LET);
+        int name = match(LexicalUnit.PROGNAME);
+        match(LexicalUnit.BE);
+        return tree.getValue(name).toString();
+    }
+
+    /**
+     * Parses the next instruction of the program after its head, followed by its <code>:</code>, or the
+     * <code>END</code> of the program once there is no instruction left. The rules applied are the ones
+     * {@link #code()} applies to the same tokens.
+     * 
+     * @return a tree of the &lt;Instruction&gt; alone, rooted at it, which is cleared by the next call, or null at the
+     * end of the program.
+     * @throws IOException in case the lexing fails (syntax error).
+     * @throws ParseException in case the parsing fails (syntax error).
+     */
+    public CompactParseTree parseInstruction() throws IOException, ParseException{
+        tree.clear();
+        switch(tokens.getType(current)) {
+            // [2] <Code>  ->  <Instruction>:<Code>
+            case IF:
+            case WHILE:
+            case OUTPUT:
+            case INPUT:
+            case VARNAME:
+                ruleOutput(2,"<Code>","<Instruction>:<Code>");
+                int node = instruction();
+                match(LexicalUnit.COLUMN);
+                tree.finish(node);
+                return tree;
+            // [3] <Code>  ->  EPSILON 
+            case END:
+            case ELSE:
+                ruleOutput(3,"<Code>","ɛ");
+                match(LexicalUnit.END);
+                return null;
+            default:
+                throw codeError();
+        }
+    }
+
+    /* Table-driven engine */
+    /**
+     * Runs the pushdown automaton with the {@link LL1Table}, from &lt;Program&gt; on the stack.
+     * 
+     * Each entry of the stack is a symbol encoded as in {@link LL1Table.Rule#rhs()}, with the node to which the
+     * tree of the symbol is added once produced. The &lt;Code&gt; which ends rule [2] is expanded into the node of
+     * the &lt;Code&gt; it derives from, which gives the same flat nodes as {@link #code()}.
+     * 
+     * @return the node of the &lt;Program&gt; in the tree being built.
+     * @throws IOException in case the lexing fails (syntax error).
+     * @throws ParseException in case the parsing fails (syntax error).
+     */
+    private int parseWithTable() throws IOException, ParseException{
+        int[] symbols = new int[initialStackSize];
+        int[] parents = new int[initialStackSize];
+        int root = CompactParseTree.NONE;
+        symbols[0] = ~NonTerminal.Program.ordinal();
+        parents[0] = CompactParseTree.NONE;
+        int size = 1;
+        while (size > 0) {
+            size--;
+            int symbol = symbols[size];
+            int parent = parents[size];
+            if (symbol == LexicalUnit.VARNAME.ordinal()) {
+                NonTerminal variable = tree.getNonTerminal(parent);
+                tree.addChild(parent, matchVariable(variable == NonTerminal.Assign || variable == NonTerminal.Input));
+                continue;
+            }
+            if (symbol >= 0) {
+                tree.addChild(parent, match(terminals[symbol]));
+                continue;
+            }
+            NonTerminal variable = variables[~symbol];
+            LL1Table.Rule rule = LL1Table.rule(variable, tokens.getType(current));
+            if (rule == null) {
+                throw LL1Table.error(variable, tokens.toSymbol(current));
+            }
+            ruleOutput(rule);
+            int node = parent;
+            if (parent == CompactParseTree.NONE) {
+                node = root = tree.nonTerminal(variable);
+            } else if (variable != NonTerminal.Code || tree.getNonTerminal(parent) != NonTerminal.Code) {
+                node = tree.nonTerminal(variable);
+                tree.addChild(parent, node);
+            }
+            int[] rhs = rule.rhs();
+            if (rhs.length == 0) {
+                if (tree.getFirstChild(node) == CompactParseTree.NONE) {
+                    tree.addChild(node, tree.epsilon());
+                }
+                continue;
+            }
+            if (size + rhs.length > symbols.length) {
+                symbols = Arrays.copyOf(symbols, 2 * (size + rhs.length));
+                parents = Arrays.copyOf(parents, symbols.length);
+            }
+            for (int i = rhs.length - 1; i >= 0; i--) {
+                symbols[size] = rhs[i];
+                parents[size] = node;
+                size++;
+            }
+        }
+        return root;
     }
     
     /**
@@ -156,20 +439,20 @@ public class Parser{
      * 
      * Tries to apply rule [1]&nbsp;&lt;Program&gt;&nbsp;&rarr;&nbsp;<code>begin</code> &lt;Code&gt; <code>end</code>
      * 
-     * @return a ParseTree with a &lt;Program&gt; non-terminal at the root.
+     * @return the node of a &lt;Program&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree program() throws IOException, ParseException{
+    private int program() throws IOException, ParseException{
         // [1] <Program>  ->  begin <Code> end
         ruleOutput(1,"<Program>","LET [ProgName] BE <Code> END");
-        return new ParseTree(NonTerminal.Program, Arrays.asList(
+        return tree.nonTerminal(NonTerminal.Program,
             match(LexicalUnit.LET),
             match(LexicalUnit.PROGNAME),
             match(LexicalUnit.BE),
             code(),
             match(LexicalUnit.END)
-        ));
+        );
     }
     
     /**
@@ -180,44 +463,60 @@ public class Parser{
      *   <li>[3]&nbsp;&lt;Code&gt;&nbsp;&rarr;&nbsp;&epsilon;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Code&gt; non-terminal at the root.
+     * Rule [2] is applied in a loop rather than by recursion, so that the depth of the stack does not depend on the
+     * length of the program. The instructions are gathered in a single flat node
+     * <code>&lt;Code&gt; &rarr; &lt;Instruction&gt; : &lt;Instruction&gt; : ...</code>, whose only child is
+     * &epsilon; when the code is empty.
+     * 
+     * @return the node of a &lt;Code&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree code() throws IOException, ParseException{
-        switch(current.getType()) {
-            // [2] <Code>  ->  <Instruction>:<Code>
-            case IF:
-            case WHILE:
-            case OUTPUT:
-            case INPUT:
-            case VARNAME:
-                ruleOutput(2,"<Code>","<Instruction>:<Code>");
-                return new ParseTree(NonTerminal.Code, Arrays.asList(
-                    instruction(),
-                    match(LexicalUnit.COLUMN),
-                    code()
-                ));
-            // [3] <Code>  ->  EPSILON 
-            case END:
-            case ELSE:
-                ruleOutput(3,"<Code>","ɛ");
-                return new ParseTree(NonTerminal.Code, Arrays.asList(
-                    new ParseTree(LexicalUnit.EPSILON)
-                ));
-            default:
-                throw new ParseException(current,NonTerminal.Code,Arrays.asList(
-                    LexicalUnit.IF,
-                    LexicalUnit.ELSE,
-                    LexicalUnit.WHILE,
-                    LexicalUnit.OUTPUT,
-                    LexicalUnit.INPUT,
-                    LexicalUnit.VARNAME,
-                    LexicalUnit.END
-                ));
+    private int code() throws IOException, ParseException{
+        int node = tree.nonTerminal(NonTerminal.Code);
+        while (true) {
+            switch(tokens.getType(current)) {
+                // [2] <Code>  ->  <Instruction>:<Code>
+                case IF:
+                case WHILE:
+                case OUTPUT:
+                case INPUT:
+                case VARNAME:
+                    ruleOutput(2,"<Code>","<Instruction>:<Code>");
+                    tree.addChild(node, instruction());
+                    tree.addChild(node, match(LexicalUnit.COLUMN));
+                    break;
+                // [3] <Code>  ->  EPSILON 
+                case END:
+                case ELSE:
+                    ruleOutput(3,"<Code>","ɛ");
+                    if (tree.getFirstChild(node) == CompactParseTree.NONE) {
+                        tree.addChild(node, tree.epsilon());
+                    }
+                    return node;
+                default:
+                    throw codeError();
+            }
         }
     }
 
+    /**
+     * Returns the error of a &lt;Code&gt; which starts with none of the tokens it may start with.
+     * 
+     * @return the ParseException on the look-ahead.
+     */
+    private ParseException codeError(){
+        return new ParseException(tokens.toSymbol(current),NonTerminal.Code,Arrays.asList(
+            LexicalUnit.IF,
+            LexicalUnit.ELSE,
+            LexicalUnit.WHILE,
+            LexicalUnit.OUTPUT,
+            LexicalUnit.INPUT,
+            LexicalUnit.VARNAME,
+            LexicalUnit.END
+        ));
+    }
+
     /**
      * Treats a &lt;Instruction&gt; at the top of the stack.
      * 
@@ -230,44 +529,44 @@ public class Parser{
      *   <li>[12]&nbsp;&lt;Instruction&gt;&nbsp;&rarr;&nbsp;<code>begin</code> &lt;InstList&gt; <code>end</code></li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Instruction&gt; non-terminal at the root.
+     * @return the node of a &lt;Instruction&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree instruction() throws IOException, ParseException{
-        switch(current.getType()) {
+    private int instruction() throws IOException, ParseException{
+        switch(tokens.getType(current)) {
             // [4] <Instruction>  ->  <Assign>
             case VARNAME:
                 ruleOutput(4,"<Instruction>","<Assign>");
-                return new ParseTree(NonTerminal.Instruction, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Instruction,
                     assignExpr()
-                ));
+                );
             // [5] <Instruction>  ->  <If>
             case IF:
                 ruleOutput(5,"<Instruction>","<If>");
-                return new ParseTree(NonTerminal.Instruction, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Instruction,
                     ifExpr()
-                ));
+                );
             // [6] <Instruction>  ->  <While>
             case WHILE:
                 ruleOutput(6,"<Instruction>","<While>");
-                return new ParseTree(NonTerminal.Instruction, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Instruction,
                     whileExpr()
-                ));
+                );
             // [7] <Instruction>  ->  <Output>
             case OUTPUT:
                 ruleOutput(7,"<Instruction>","<Output>");
-                return new ParseTree(NonTerminal.Instruction, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Instruction,
                     outputExpr()
-                ));
+                );
             // [8] <Instruction>  ->  <Input>
             case INPUT:
                 ruleOutput(8,"<Instruction>","<Input>");
-                return new ParseTree(NonTerminal.Instruction, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Instruction,
                     inputExpr()
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.Instruction,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.Instruction,Arrays.asList(
                     LexicalUnit.VARNAME,
                     LexicalUnit.IF,
                     LexicalUnit.WHILE,
@@ -282,18 +581,18 @@ public class Parser{
      * 
      * Tries to apply rule [13]&nbsp;&lt;Assign&gt;&nbsp;&rarr;&nbsp;[Varname]<code>:=</code>&lt;ExprArith&gt;
      * 
-     * @return a ParseTree with a &lt;Assign&gt; non-terminal at the root.
+     * @return the node of a &lt;Assign&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree assignExpr() throws IOException, ParseException{
+    private int assignExpr() throws IOException, ParseException{
         // [9] <Assign>  ->  [Varname] = <ExprArith>
         ruleOutput(9,"<Assign>","[Varname] = <ExprArith>");
-        return new ParseTree(NonTerminal.Assign, Arrays.asList(
-            match(LexicalUnit.VARNAME),
+        return tree.nonTerminal(NonTerminal.Assign,
+            matchVariable(true),
             match(LexicalUnit.ASSIGN),
             exprArith()
-        ));
+        );
     }
     
     /**
@@ -301,24 +600,24 @@ public class Parser{
      * 
      * Tries to apply rule [10]&nbsp;&lt;ExprArith&gt;&nbsp;&rarr;&nbsp;&lt;Prod&gt;&lt;ExprArith'&gt;
      * 
-     * @return a ParseTree with a &lt;ExprArith&gt; non-terminal at the root.
+     * @return the node of a &lt;ExprArith&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree exprArith() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int exprArith() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             case MINUS:
             case LPAREN:
             case VARNAME:
             case NUMBER:
                 // [10] <ExprArith>  ->  <Prod> <ExprArith'>
                 ruleOutput(10,"<ExprArith>","<Prod> <ExprArith'>");
-                return new ParseTree(NonTerminal.ExprArith, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.ExprArith,
                     prod(),
                     exprArithPrime()
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.ExprArith,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.ExprArith,Arrays.asList(
                     LexicalUnit.MINUS,
                     LexicalUnit.LPAREN,
                     LexicalUnit.VARNAME,
@@ -336,80 +635,105 @@ public class Parser{
      *   <li>[13]&nbsp;&lt;ExprArith'&gt;&nbsp;&rarr;&nbsp;&epsilon;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;ExprArith'&gt; non-terminal at the root.
+     * Rules [11] and [12] are applied in a loop rather than by recursion, so that the depth of the stack does not
+     * depend on the number of terms of a sum. Each &lt;ExprArith'&gt; is still the last child of the previous one.
+     * 
+     * @return the node of a &lt;ExprArith'&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree exprArithPrime() throws IOException, ParseException{
-        switch (current.getType()) {
-            // [11] <ExprArith'>  ->  + <Prod> <ExprArith'>
-            case PLUS:
-                ruleOutput(11,"<ExprArith'>","+ <Prod> <ExprArith'>");
-                return new ParseTree(NonTerminal.ExprArithPrime, Arrays.asList(
-                    match(LexicalUnit.PLUS),
-                    prod(),
-                    exprArithPrime()
-                ));
-            // [12] <ExprArith'>  ->  - <Prod> <ExprArith'>
-            case MINUS:
-                ruleOutput(12,"<ExprArith'>","- <Prod> <ExprArith'>");
-                return new ParseTree(NonTerminal.ExprArithPrime, Arrays.asList(
-                    match(LexicalUnit.MINUS),
-                    prod(),
-                    exprArithPrime()
-                ));
-            // [13] <ExprArith'>  ->  EPSILON
-            case COLUMN:
-            case RPAREN:
-            case RBRACK:
-            case EQUAL:
-            case SMALEQ:
-            case SMALLER:
-            case IMPLIES:
-            case PIPE:
-                ruleOutput(13,"<ExprArith'>","ɛ");
-                return new ParseTree(NonTerminal.ExprArithPrime, Arrays.asList(
-                    new ParseTree(LexicalUnit.EPSILON)
-                ));
-            default:
-                throw new ParseException(current,NonTerminal.ExprArithPrime,Arrays.asList(
-                    LexicalUnit.PLUS,
-                    LexicalUnit.MINUS,
-                    LexicalUnit.COLUMN,
-                    LexicalUnit.RPAREN,
-                    LexicalUnit.RBRACK,
-                    LexicalUnit.EQUAL,
-                    LexicalUnit.SMALEQ,
-                    LexicalUnit.SMALLER,
-                    LexicalUnit.IMPLIES,
-                    LexicalUnit.PIPE
-                ));
+    private int exprArithPrime() throws IOException, ParseException{
+        int first = CompactParseTree.NONE;
+        int last = CompactParseTree.NONE;
+        while (true) {
+            int node;
+            switch (tokens.getType(current)) {
+                // [11] <ExprArith'>  ->  + <Prod> <ExprArith'>
+                case PLUS:
+                    ruleOutput(11,"<ExprArith'>","+ <Prod> <ExprArith'>");
+                    node = tree.nonTerminal(NonTerminal.ExprArithPrime);
+                    tree.addChild(node, match(LexicalUnit.PLUS));
+                    tree.addChild(node, prod());
+                    break;
+                // [12] <ExprArith'>  ->  - <Prod> <ExprArith'>
+                case MINUS:
+                    ruleOutput(12,"<ExprArith'>","- <Prod> <ExprArith'>");
+                    node = tree.nonTerminal(NonTerminal.ExprArithPrime);
+                    tree.addChild(node, match(LexicalUnit.MINUS));
+                    tree.addChild(node, prod());
+                    break;
+                // [13] <ExprArith'>  ->  EPSILON
+                case COLUMN:
+                case RPAREN:
+                case RBRACK:
+                case EQUAL:
+                case SMALEQ:
+                case SMALLER:
+                case IMPLIES:
+                case PIPE:
+                    ruleOutput(13,"<ExprArith'>","ɛ");
+                    node = tree.nonTerminal(NonTerminal.ExprArithPrime,
+                        tree.epsilon()
+                    );
+                    return chain(first, last, node);
+                default:
+                    throw new ParseException(tokens.toSymbol(current),NonTerminal.ExprArithPrime,Arrays.asList(
+                        LexicalUnit.PLUS,
+                        LexicalUnit.MINUS,
+                        LexicalUnit.COLUMN,
+                        LexicalUnit.RPAREN,
+                        LexicalUnit.RBRACK,
+                        LexicalUnit.EQUAL,
+                        LexicalUnit.SMALEQ,
+                        LexicalUnit.SMALLER,
+                        LexicalUnit.IMPLIES,
+                        LexicalUnit.PIPE
+                    ));
+            }
+            first = chain(first, last, node);
+            last = node;
         }
     }
+
+    /**
+     * Appends a node to a chain of nodes built in a loop, each of which is the last child of the previous one.
+     * 
+     * @param first the first node of the chain, or NONE if the chain is empty.
+     * @param last the last node of the chain, or NONE if the chain is empty.
+     * @param node the node to append.
+     * @return the first node of the chain.
+     */
+    private int chain(int first, int last, int node){
+        if (last == CompactParseTree.NONE) {
+            return node;
+        }
+        tree.addChild(last, node);
+        return first;
+    }
     
     /**
      * Treats a &lt;Prod&gt; at the top of the stack.
      * 
      * Tries to apply rule [14]&nbsp;&lt;Prod&gt;&nbsp;&rarr;&nbsp;&lt;Atom&gt;&lt;Prod'&gt;
      * 
-     * @return a ParseTree with a &lt;Prod&gt; non-terminal at the root.
+     * @return the node of a &lt;Prod&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree prod() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int prod() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             case MINUS:
             case LPAREN:
             case VARNAME:
             case NUMBER:
                 // [14] <Prod>  ->  <Atom> <Prod'>
-                ruleOutput(18,"<Prod'>","<Atom> <Prod'>");
-                return new ParseTree(NonTerminal.Prod, Arrays.asList(
+                ruleOutput(14,"<Prod>","<Atom> <Prod'>");
+                return tree.nonTerminal(NonTerminal.Prod,
                     atom(),
                     prodPrime()
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.ExprArith,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.ExprArith,Arrays.asList(
                     LexicalUnit.MINUS,
                     LexicalUnit.LPAREN,
                     LexicalUnit.VARNAME,
@@ -427,58 +751,66 @@ public class Parser{
      *   <li>[21]&nbsp;&lt;Prod'&gt;&nbsp;&rarr;&nbsp;&epsilon;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Prod'&gt; non-terminal at the root.
+     * Rules [15] and [16] are applied in a loop rather than by recursion, as in {@link #exprArithPrime()}.
+     * 
+     * @return the node of a &lt;Prod'&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree prodPrime() throws IOException, ParseException{
-        switch (current.getType()) {
-            // [15] <Prod'>  ->  * <Atom> <Prod'>
-            case TIMES:
-                ruleOutput(15,"<Prod'>","* <Atom> <Prod'>");
-                return new ParseTree(NonTerminal.ProdPrime, Arrays.asList(
-                    match(LexicalUnit.TIMES),
-                    atom(),
-                    prodPrime()
-                ));
-            // [16] <Prod'>  ->  / <Atom> <Prod'>
-            case DIVIDE:
-                ruleOutput(16,"<Prod'>","/ <Atom> <Prod'>");
-                return new ParseTree(NonTerminal.ProdPrime, Arrays.asList(
-                    match(LexicalUnit.DIVIDE),
-                    atom(),
-                    prodPrime()
-                ));
-            // [17] <Prod'>  ->  EPSILON
-            case COLUMN:
-            case PLUS:
-            case MINUS:
-            case RPAREN:
-            case RBRACK:
-            case EQUAL:
-            case SMALLER:
-            case SMALEQ:
-            case IMPLIES:
-            case PIPE:
-                ruleOutput(17,"<Prod'>","ɛ");
-                return new ParseTree(NonTerminal.ProdPrime, Arrays.asList(
-                    new ParseTree(LexicalUnit.EPSILON)
-                ));
-            default:
-                throw new ParseException(current,NonTerminal.ProdPrime,Arrays.asList(
-                    LexicalUnit.PLUS,
-                    LexicalUnit.MINUS,
-                    LexicalUnit.TIMES,
-                    LexicalUnit.DIVIDE,
-                    LexicalUnit.COLUMN,
-                    LexicalUnit.RPAREN,
-                    LexicalUnit.RBRACK,
-                    LexicalUnit.SMALEQ,
-                    LexicalUnit.IMPLIES,
-                    LexicalUnit.PIPE,
-                    LexicalUnit.EQUAL,
-                    LexicalUnit.SMALLER
-                ));
+    private int prodPrime() throws IOException, ParseException{
+        int first = CompactParseTree.NONE;
+        int last = CompactParseTree.NONE;
+        while (true) {
+            int node;
+            switch (tokens.getType(current)) {
+                // [15] <Prod'>  ->  * <Atom> <Prod'>
+                case TIMES:
+                    ruleOutput(15,"<Prod'>","* <Atom> <Prod'>");
+                    node = tree.nonTerminal(NonTerminal.ProdPrime);
+                    tree.addChild(node, match(LexicalUnit.TIMES));
+                    tree.addChild(node, atom());
+                    break;
+                // [16] <Prod'>  ->  / <Atom> <Prod'>
+                case DIVIDE:
+                    ruleOutput(16,"<Prod'>","/ <Atom> <Prod'>");
+                    node = tree.nonTerminal(NonTerminal.ProdPrime);
+                    tree.addChild(node, match(LexicalUnit.DIVIDE));
+                    tree.addChild(node, atom());
+                    break;
+                // [17] <Prod'>  ->  EPSILON
+                case COLUMN:
+                case PLUS:
+                case MINUS:
+                case RPAREN:
+                case RBRACK:
+                case EQUAL:
+                case SMALLER:
+                case SMALEQ:
+                case IMPLIES:
+                case PIPE:
+                    ruleOutput(17,"<Prod'>","ɛ");
+                    node = tree.nonTerminal(NonTerminal.ProdPrime,
+                        tree.epsilon()
+                    );
+                    return chain(first, last, node);
+                default:
+                    throw new ParseException(tokens.toSymbol(current),NonTerminal.ProdPrime,Arrays.asList(
+                        LexicalUnit.PLUS,
+                        LexicalUnit.MINUS,
+                        LexicalUnit.TIMES,
+                        LexicalUnit.DIVIDE,
+                        LexicalUnit.COLUMN,
+                        LexicalUnit.RPAREN,
+                        LexicalUnit.RBRACK,
+                        LexicalUnit.SMALEQ,
+                        LexicalUnit.IMPLIES,
+                        LexicalUnit.PIPE,
+                        LexicalUnit.EQUAL,
+                        LexicalUnit.SMALLER
+                    ));
+            }
+            first = chain(first, last, node);
+            last = node;
         }
     }
 
@@ -492,41 +824,41 @@ public class Parser{
      *   <li>[21]&nbsp;&lt;Atom&gt;&nbsp;&rarr;&nbsp;<code>-</code>&lt;Atom&gt;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Atom&gt; non-terminal at the root.
+     * @return the node of a &lt;Atom&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree atom() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int atom() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             // [21] <Atom>  ->  - <Atom>
             case MINUS:
                 ruleOutput(21,"<Atom>","- <Atom>");
-                return new ParseTree(NonTerminal.Atom, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Atom,
                     match(LexicalUnit.MINUS),
                     atom()
-                ));
+                );
             // [20] <Atom>  ->  (<ExprArith>)
             case LPAREN:
                 ruleOutput(20,"<Atom>","(<ExprArith>)");
-                return new ParseTree(NonTerminal.Atom, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Atom,
                     match(LexicalUnit.LPAREN),
                     exprArith(),
                     match(LexicalUnit.RPAREN)
-                ));
+                );
             // [18] <Atom>  ->  [VarName]
             case VARNAME:
                 ruleOutput(18,"<Atom>","[VarName]");
-                return new ParseTree(NonTerminal.Atom, Arrays.asList(
-                    match(LexicalUnit.VARNAME)
-                ));
+                return tree.nonTerminal(NonTerminal.Atom,
+                    matchVariable(false)
+                );
             // [19] <Atom>  ->  [Number]
             case NUMBER:
                 ruleOutput(19,"<Atom>","[Number]");
-                return new ParseTree(NonTerminal.Atom, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Atom,
                     match(LexicalUnit.NUMBER)
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.Atom,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.Atom,Arrays.asList(
                     LexicalUnit.MINUS,
                     LexicalUnit.LPAREN,
                     LexicalUnit.VARNAME,
@@ -540,14 +872,14 @@ public class Parser{
      * 
      * Tries to apply rule [22]&nbsp;&lt;If&gt;&nbsp;&rarr;&nbsp;<code>IF</code>&nbsp;<code>{</code>&lt;Cond&gt;<code>}</code>&nbsp;<code>THEN</code>&nbsp;&lt;Code&gt;&nbsp;<code>ELSE</code>&nbsp;&lt;IfTail&gt;
      * 
-     * @return a ParseTree with a &lt;If&gt; non-terminal at the root.
+     * @return the node of a &lt;If&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree ifExpr() throws IOException, ParseException{
+    private int ifExpr() throws IOException, ParseException{
         // [22] <If>  -> if {<Cond>} then <Code><IfTail>
         ruleOutput(22,"<If>","IF {<Cond>} THEN <Code><IfTail>");
-        return new ParseTree(NonTerminal.If, Arrays.asList(
+        return tree.nonTerminal(NonTerminal.If,
             match(LexicalUnit.IF),
             match(LexicalUnit.LBRACK),
             cond(),
@@ -555,7 +887,7 @@ public class Parser{
             match(LexicalUnit.THEN),
             code(),
             ifTail()
-        ));
+        );
     }
 
     /**
@@ -566,28 +898,28 @@ public class Parser{
      *   <li>[24]&nbsp;&lt;IfTail&gt;&nbsp;&rarr;&nbsp;<code>ELSE</code>&nbsp;&lt;Instruction&gt;&nbsp;<code>END</code></li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;IfTail&gt; non-terminal at the root.
+     * @return the node of a &lt;IfTail&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree ifTail() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int ifTail() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             // [24] <IfTail>  ->  ELSE <Code> END
             case ELSE:
                 ruleOutput(24,"<IfTail>","ELSE <Code> END");
-                return new ParseTree(NonTerminal.IfTail, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.IfTail,
                     match(LexicalUnit.ELSE),
                     code(),
                     match(LexicalUnit.END)
-                ));
+                );
             // [23] <IfTail>  ->  END
             case END:
                 ruleOutput(23,"<IfTail>","END");
-                return new ParseTree(NonTerminal.IfTail, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.IfTail,
                     match(LexicalUnit.END)
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.IfTail,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.IfTail,Arrays.asList(
                     LexicalUnit.END,
                     LexicalUnit.ELSE
                 ));
@@ -597,70 +929,66 @@ public class Parser{
     /**
      * Treats a &lt;Cond&gt; at the top of the stack.
      * 
-     * Tries to apply rule [25]&nbsp;&lt;Cond&gt;&nbsp;&rarr;&nbsp;&lt;SimpleCond&gt;&lt;Cond'&gt;
-     * 
-     * @return a ParseTree with a &lt;Cond&gt; non-terminal at the root.
-     * @throws IOException in case the lexing fails (syntax error).
-     * @throws ParseException in case the parsing fails (syntax error).
-     */
-    private ParseTree cond() throws IOException, ParseException{
-        switch (current.getType()) {
-            case MINUS:
-            case LPAREN:
-            case PIPE:
-            case VARNAME:
-            case NUMBER:
-                // [25] <Cond>  -> <SimpleCond> <Cond'>
-                ruleOutput(25,"<Cond>","<SimpleCond> <Cond'>");
-                return new ParseTree(NonTerminal.Cond, Arrays.asList(
-                    simpleCond(),
-                    condPrime()
-                ));
-            default:
-                throw new ParseException(current,NonTerminal.ExprArith,Arrays.asList(
-                    LexicalUnit.MINUS,
-                    LexicalUnit.LPAREN,
-                    LexicalUnit.PIPE,
-                    LexicalUnit.VARNAME,
-                    LexicalUnit.NUMBER
-                ));
-        }
-    }
-    
-    /**
-     * Treats a &lt;Cond'&gt; at the top of the stack.
-     * 
-     * Tries to apply one of the rules <ul>
-     *   <li>[26]&nbsp;&lt;Cond'&gt;&nbsp;&rarr;&nbsp;<code>-></code> &lt;Cond'&gt;</li>
+     * Tries to apply rule [25]&nbsp;&lt;Cond&gt;&nbsp;&rarr;&nbsp;&lt;SimpleCond&gt;&lt;Cond'&gt;, then one of the rules <ul>
+     *   <li>[26]&nbsp;&lt;Cond'&gt;&nbsp;&rarr;&nbsp;<code>-></code> &lt;Cond&gt;</li>
      *   <li>[27]&nbsp;&lt;Cond'&gt;&nbsp;&rarr;&nbsp;&epsilon;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Cond'&gt; non-terminal at the root.
+     * The &lt;Cond&gt; of rule [26] is treated in the same loop rather than by recursion, so that the depth of the
+     * stack does not depend on the number of implications in a chain. It is still the last child of its &lt;Cond'&gt;.
+     * 
+     * @return the node of a &lt;Cond&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree condPrime() throws IOException, ParseException{
-        switch (current.getType()) {
-            // [26] <Cond'>  ->  -> <Cond'>
-            case IMPLIES:
-                ruleOutput(26,"<Cond'>","-> <Cond>");
-                return new ParseTree(NonTerminal.CondPrime, Arrays.asList(
-                    match(LexicalUnit.IMPLIES),
-                    cond()
-                ));
-            // [27] <Cond'>  ->  EPSILON
-            case PIPE:
-            case RBRACK:
-                ruleOutput(27,"<Cond'>","ɛ");
-                return new ParseTree(NonTerminal.CondPrime, Arrays.asList(
-                    new ParseTree(LexicalUnit.EPSILON)
-                ));
-            default:
-                throw new ParseException(current,NonTerminal.CondPrime,Arrays.asList(
-                    LexicalUnit.IMPLIES,
-                    LexicalUnit.PIPE,
-                    LexicalUnit.RBRACK
-                ));
+    private int cond() throws IOException, ParseException{
+        int first = CompactParseTree.NONE;
+        int last = CompactParseTree.NONE;
+        while (true) {
+            switch (tokens.getType(current)) {
+                case MINUS:
+                case LPAREN:
+                case PIPE:
+                case VARNAME:
+                case NUMBER:
+                    break;
+                default:
+                    throw new ParseException(tokens.toSymbol(current),NonTerminal.ExprArith,Arrays.asList(
+                        LexicalUnit.MINUS,
+                        LexicalUnit.LPAREN,
+                        LexicalUnit.PIPE,
+                        LexicalUnit.VARNAME,
+                        LexicalUnit.NUMBER
+                    ));
+            }
+            // [25] <Cond>  -> <SimpleCond> <Cond'>
+            ruleOutput(25,"<Cond>","<SimpleCond> <Cond'>");
+            int node = tree.nonTerminal(NonTerminal.Cond);
+            tree.addChild(node, simpleCond());
+            first = chain(first, last, node);
+            switch (tokens.getType(current)) {
+                // [26] <Cond'>  ->  -> <Cond>
+                case IMPLIES:
+                    ruleOutput(26,"<Cond'>","-> <Cond>");
+                    last = tree.nonTerminal(NonTerminal.CondPrime);
+                    tree.addChild(last, match(LexicalUnit.IMPLIES));
+                    tree.addChild(node, last);
+                    break;
+                // [27] <Cond'>  ->  EPSILON
+                case PIPE:
+                case RBRACK:
+                    ruleOutput(27,"<Cond'>","ɛ");
+                    tree.addChild(node, tree.nonTerminal(NonTerminal.CondPrime,
+                        tree.epsilon()
+                    ));
+                    return first;
+                default:
+                    throw new ParseException(tokens.toSymbol(current),NonTerminal.CondPrime,Arrays.asList(
+                        LexicalUnit.IMPLIES,
+                        LexicalUnit.PIPE,
+                        LexicalUnit.RBRACK
+                    ));
+            }
         }
     }
     
@@ -672,33 +1000,33 @@ public class Parser{
      *   <li>[29]&nbsp;&lt;SimpleCond&gt;&nbsp;&rarr;&nbsp;&lt;ExprArith&gt;&lt;Comp&gt;&lt;ExprArith&gt;</li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;SimpleCond&gt; non-terminal at the root.
+     * @return the node of a &lt;SimpleCond&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree simpleCond() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int simpleCond() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             // [28] <SimpleCond>  ->  |<Cond>|
             case PIPE:
-                ruleOutput(35,"<SimpleCond>","|<Cond>|");
-                return new ParseTree(NonTerminal.SimpleCond, Arrays.asList(
+                ruleOutput(28,"<SimpleCond>","|<Cond>|");
+                return tree.nonTerminal(NonTerminal.SimpleCond,
                     match(LexicalUnit.PIPE),
                     cond(),
                     match(LexicalUnit.PIPE)
-                ));
+                );
             // [29] <SimpleCond>  ->  <ExprArith> <Comp> <ExprArith>
             case MINUS:
             case LPAREN:
             case VARNAME:
             case NUMBER:
-                ruleOutput(36,"<SimpleCond>","<ExprArith> <Comp> <ExprArith>");
-                return new ParseTree(NonTerminal.SimpleCond, Arrays.asList(
+                ruleOutput(29,"<SimpleCond>","<ExprArith> <Comp> <ExprArith>");
+                return tree.nonTerminal(NonTerminal.SimpleCond,
                     exprArith(),
                     compOp(),
                     exprArith()
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.SimpleCond,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.SimpleCond,Arrays.asList(
                     LexicalUnit.PIPE,
                     LexicalUnit.MINUS,
                     LexicalUnit.LPAREN,
@@ -717,32 +1045,32 @@ public class Parser{
      *   <li>[32]&nbsp;&lt;Comp&gt;&nbsp;&rarr;&nbsp;<code>&lt;</code></li>
      * </ul>
      * 
-     * @return a ParseTree with a &lt;Comp&gt; non-terminal at the root.
+     * @return the node of a &lt;Comp&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree compOp() throws IOException, ParseException{
-        switch (current.getType()) {
+    private int compOp() throws IOException, ParseException{
+        switch (tokens.getType(current)) {
             // [30] <Comp>  ->  ==
             case EQUAL:
                 ruleOutput(30,"<Comp>","==");
-                return new ParseTree(NonTerminal.Comp, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Comp,
                     match(LexicalUnit.EQUAL)
-                ));
+                );
             // [31] <Comp>  ->  <=
             case SMALEQ:
                 ruleOutput(31,"<Comp>","<=");
-                return new ParseTree(NonTerminal.Comp, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Comp,
                     match(LexicalUnit.SMALEQ)
-                ));
+                );
             // [32] <Comp>  ->  <
             case SMALLER:
                 ruleOutput(32,"<Comp>","<");
-                return new ParseTree(NonTerminal.Comp, Arrays.asList(
+                return tree.nonTerminal(NonTerminal.Comp,
                     match(LexicalUnit.SMALLER)
-                ));
+                );
             default:
-                throw new ParseException(current,NonTerminal.Comp,Arrays.asList(
+                throw new ParseException(tokens.toSymbol(current),NonTerminal.Comp,Arrays.asList(
                     LexicalUnit.EQUAL,
                     LexicalUnit.SMALEQ,
                     LexicalUnit.SMALLER
@@ -755,14 +1083,14 @@ public class Parser{
      * 
      * Tries to apply rule [33]&nbsp;&lt;While&gt;&nbsp;&rarr;&nbsp;<code>WHILE</code>&nbsp;<code>{</code>&lt;Cond&gt;<code>}</code>&nbsp;<code>REPEAT</code>&nbsp;&lt;Code&gt;&nbsp;<code>END</code>
      * 
-     * @return a ParseTree with a &lt;While&gt; non-terminal at the root.
+     * @return the node of a &lt;While&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree whileExpr() throws IOException, ParseException{
+    private int whileExpr() throws IOException, ParseException{
         // [33] <While>  ->  WHILE {<Cond>} REPEAT <Code> END
         ruleOutput(33,"<While>","WHILE <Cond> REPEAT <Code>");
-        return new ParseTree(NonTerminal.While, Arrays.asList(
+        return tree.nonTerminal(NonTerminal.While,
             match(LexicalUnit.WHILE),
             match(LexicalUnit.LBRACK),
             cond(),
@@ -770,7 +1098,7 @@ public class Parser{
             match(LexicalUnit.REPEAT),
             code(),
             match(LexicalUnit.END)
-        ));
+        );
     }
     
     /**
@@ -778,43 +1106,43 @@ public class Parser{
      * 
      * Tries to apply rule [34]&nbsp;&lt;Output&gt;&nbsp;&rarr;&nbsp;<code>OUT(</code>[Varname]<code>)</code>
      * 
-     * @return a ParseTree with a &lt;Output&gt; non-terminal at the root.
+     * @return the node of a &lt;Output&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree outputExpr() throws IOException, ParseException{
+    private int outputExpr() throws IOException, ParseException{
         // [34] <Output>  ->  OUT([VarName])
         ruleOutput(34,"<Output>","OUT([VarName])");
-        return new ParseTree(NonTerminal.Output, Arrays.asList(
+        return tree.nonTerminal(NonTerminal.Output,
             match(LexicalUnit.OUTPUT),
             match(LexicalUnit.LPAREN),
-            match(LexicalUnit.VARNAME),
+            matchVariable(false),
             match(LexicalUnit.RPAREN)
-        ));
+        );
     }
 
     /**
      * Treats a &lt;Input&gt; at the top of the stack.
      * 
-     * Tries to apply rule [34]&nbsp;&lt;Input&gt;&nbsp;&rarr;&nbsp;<code>IN(</code>[Varname]<code>)</code>
+     * Tries to apply rule [35]&nbsp;&lt;Input&gt;&nbsp;&rarr;&nbsp;<code>IN(</code>[Varname]<code>)</code>
      * 
-     * @return a ParseTree with a &lt;Input&gt; non-terminal at the root.
+     * @return the node of a &lt;Input&gt; non-terminal in the tree being built.
      * @throws IOException in case the lexing fails (syntax error).
      * @throws ParseException in case the parsing fails (syntax error).
      */
-    private ParseTree inputExpr() throws IOException, ParseException{
-        // [34] <Input>  ->  IN([VarName])
-        ruleOutput(34,"<Input>","IN([VarName])");
-        return new ParseTree(NonTerminal.Input, Arrays.asList(
+    private int inputExpr() throws IOException, ParseException{
+        // [35] <Input>  ->  IN([VarName])
+        ruleOutput(35,"<Input>","IN([VarName])");
+        return tree.nonTerminal(NonTerminal.Input,
             match(LexicalUnit.INPUT),
             match(LexicalUnit.LPAREN),
-            match(LexicalUnit.VARNAME),
+            matchVariable(true),
             match(LexicalUnit.RPAREN)
-        ));
+        );
     }
 
 /*
-    private ParseTree nonterminal() throws IOException, ParseException{
+    private int nonterminal() throws IOException, ParseException{
         return new ParseTree(NonTerminal.TODO); // TODO
     }
 */
@@ -0,0 +1,326 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Compiles a GILLES program to LLVM code with the lexer, the parser and the code generator each on a thread of its own,
+ * so that the three run at the same time and the program is never held whole in memory.
+ *
+ * The lexer records the tokens in batches, which go to the parser through a bounded queue and come back to the lexer
+ * once read. The parser reads the program one top-level instruction at a time (see {@link Parser#parseInstruction()}),
+ * lowers each to its {@link Ast} and sends the statements in groups to the code generator through another bounded
+ * queue. A stage which gets ahead waits for the next one when its queue is full, so that the memory taken only depends
+ * on the size of the queues and of the largest instruction.
+ *
+ * The code is generated in SSA form (see {@link LLVMParser#LLVMParser(boolean)}): the variables of the program are
+ * only known as its statements come, too late to be allocated in the entry block of the main function, where the
+ * allocations have to be for LLVM to promote them to registers.
+ *
+ * An error of the lexer reaches the parser after the tokens before it, and is thrown when the parser reaches it, as
+ * when lexing on the thread of the parser. An error of the parser stops the lexer and the code generator, which then
+ * removes the file it was writing; an error of the code generator stops the parser and the lexer in the same way.
+ */
+public class PipelinedCompiler {
+    /**
+     * Capacity (in tokens) of the batches sent by the lexer to the parser.
+     */
+    private static final int TOKEN_BATCH_SIZE = 1 << 12;
+    /**
+     * Number of batches of tokens, which bounds how far the lexer gets ahead of the parser.
+     */
+    private static final int TOKEN_BATCHES = 8;
+    /**
+     * Number of statements sent at once by the parser to the code generator.
+     */
+    private static final int STATEMENT_GROUP_SIZE = 256;
+    /**
+     * Number of groups of statements the parser gets ahead of the code generator.
+     */
+    private static final int STATEMENT_GROUPS = 8;
+    /**
+     * Size (in characters) of the buffer through which the LLVM file is written.
+     */
+    private static final int LLVM_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The group of statements telling the code generator that the program has been parsed.
+     */
+    private static final List<Statement> END = List.of();
+
+    /**
+     * A batch of tokens on its way from the lexer to the parser.
+     */
+    private static final class TokenBatch {
+        private final TokenBuffer tokens = new TokenBuffer(TOKEN_BATCH_SIZE);
+        /**
+         * The index of each name of the batch in the buffer of the parser, or -1 if not interned there yet. The
+         * names of the batch are kept when it is reused, and so are their indexes.
+         */
+        private int[] names = new int[0];
+        /**
+         * The error which stopped the lexer after the tokens of the batch, or null.
+         */
+        private Exception error;
+    }
+
+    /**
+     * A statement on its way from the parser to the code generator.
+     *
+     * @param statement The top-level statement.
+     * @param variables The variables first appearing in the statement, in order of their slots.
+     */
+    private record Statement(Ast.Statement statement, List<String> variables) {
+    }
+
+    private final Path outputDirectory;
+
+    private final BlockingQueue<TokenBatch> freeBatches = new ArrayBlockingQueue<>(TOKEN_BATCHES);
+    private final BlockingQueue<TokenBatch> lexedBatches = new ArrayBlockingQueue<>(TOKEN_BATCHES);
+    private final BlockingQueue<List<Statement>> statements = new ArrayBlockingQueue<>(STATEMENT_GROUPS);
+    /**
+     * The error which stopped the code generator, or null.
+     */
+    private volatile Throwable generationError;
+
+    /**
+     * Creates a compiler of one program.
+     *
+     * @param outputDirectory The directory in which the LLVM file is written.
+     */
+    public PipelinedCompiler(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        for (int i = 0; i < TOKEN_BATCHES; i++) {
+            freeBatches.add(new TokenBatch());
+        }
+    }
+
+    /**
+     * Compiles the program, parsing it on the calling thread while it is lexed and generated on two others.
+     *
+     * @param source The lexer of the program.
+     * @return The LLVM file written.
+     * @throws IOException If reading the program or writing the LLVM file fails, or if interrupted.
+     * @throws ParseException If the program is not a GILLES program.
+     * @throws RuntimeException If the lexer meets a character which starts no token, or the generation fails.
+     * @throws StackOverflowError If the program is too deeply nested to be parsed or generated.
+     */
+    public Path compile(TokenSource source) throws IOException, ParseException {
+        Thread parser = Thread.currentThread();
+        Thread lexer = Thread.ofPlatform().name("lexer").daemon().start(() -> lex(source));
+        Thread generator = null;
+        try {
+            Parser instructions = new Parser(new QueuedTokens(), false);
+            Path file = outputDirectory.resolve(instructions.parseHead().concat(".ll"));
+            generator = Thread.ofPlatform().name("generator").daemon().start(() -> generate(file, parser));
+            parse(instructions);
+            generator.join();
+            throwGenerationError();
+            return file;
+        } catch (InterruptedException | InterruptedIOException e) {
+            // Interrupted by the code generator if it failed
+            throwGenerationError();
+            throw e instanceof InterruptedIOException io ? io : new InterruptedIOException("Interrupted while parsing");
+        } finally {
+            lexer.interrupt();
+            if (generator != null) {
+                // Once stopped, the code generator has removed its file
+                generator.interrupt();
+                joinUninterruptibly(generator);
+            }
+            // Clears the interruption by the code generator, if any
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Throws the error which stopped the code generator, if any.
+     */
+    private void throwGenerationError() throws IOException {
+        if (generationError instanceof IOException e) {
+            throw e;
+        } else if (generationError instanceof StackOverflowError e) {
+            throw e;
+        } else if (generationError != null) {
+            throw (RuntimeException) generationError;
+        }
+    }
+
+    /**
+     * Parses the instructions of the program after its head and sends their statements to the code generator.
+     */
+    private void parse(Parser parser) throws IOException, ParseException, InterruptedException {
+        // The code generator declares the variables by name, the symbol table being filled by the parser meanwhile
+        int known = 0;
+        List<Statement> group = new ArrayList<>(STATEMENT_GROUP_SIZE);
+        CompactParseTree tree;
+        while ((tree = parser.parseInstruction()) != null) {
+            Ast.Statement statement = AstBuilder.lowerInstruction(tree, tree.getRoot());
+            SymbolTable symbols = tree.getSymbols();
+            List<String> firstAppearing = List.of();
+            if (symbols.size() > known) {
+                firstAppearing = new ArrayList<>(symbols.size() - known);
+                for (; known < symbols.size(); known++) {
+                    firstAppearing.add(symbols.getName(known));
+                }
+            }
+            group.add(new Statement(statement, firstAppearing));
+            if (group.size() == STATEMENT_GROUP_SIZE) {
+                statements.put(group);
+                group = new ArrayList<>(STATEMENT_GROUP_SIZE);
+            }
+        }
+        if (!group.isEmpty()) {
+            statements.put(group);
+        }
+        statements.put(END);
+    }
+
+    /**
+     * Lexes the program into batches until its end or an error of the lexer, or until interrupted.
+     */
+    private void lex(TokenSource source) {
+        try {
+            while (true) {
+                TokenBatch batch = freeBatches.take();
+                TokenBuffer tokens = batch.tokens;
+                tokens.clear();
+                try {
+                    source.fill(tokens);
+                } catch (IOException | RuntimeException e) {
+                    batch.error = e;
+                }
+                lexedBatches.put(batch);
+                if (batch.error != null || tokens.getType(tokens.size() - 1) == LexicalUnit.EOS) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped by an error of the parser
+        }
+    }
+
+    /**
+     * Generates the LLVM code of the statements sent by the parser until the end of the program, or until
+     * interrupted. The file is removed if the generation does not end.
+     *
+     * @param file The LLVM file to write.
+     * @param parser The thread to interrupt if the generation fails.
+     */
+    private void generate(Path file, Thread parser) {
+        boolean ended = false;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.toFile()), LLVM_BUFFER_SIZE)) {
+            LLVMParser generator = new LLVMParser(true);
+            LLVMParser.CodegenContext context = generator.beginProgram(writer);
+            List<Statement> group;
+            while ((group = statements.take()) != END) {
+                for (Statement statement : group) {
+                    generator.generate(context, statement.statement(), statement.variables());
+                }
+            }
+            generator.endProgram(context);
+            ended = true;
+        } catch (InterruptedException e) {
+            // Stopped by an error of the parser
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            generationError = e;
+            parser.interrupt();
+        }
+        if (!ended) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // The error which stopped the generation is the one reported
+            }
+        }
+    }
+
+    /**
+     * Waits for a thread to end, even if interrupted meanwhile.
+     */
+    private static void joinUninterruptibly(Thread thread) {
+        while (true) {
+            try {
+                thread.join();
+                return;
+            } catch (InterruptedException e) {
+                // Keep waiting
+            }
+        }
+    }
+
+    /**
+     * The tokens of the batches lexed, read by the parser. The names of each batch are interned again in the buffer
+     * of the parser as its tokens are read.
+     */
+    private final class QueuedTokens implements TokenSource {
+        private TokenBatch batch;
+        /**
+         * The index of the next token to read in the batch.
+         */
+        private int token;
+
+        @Override
+        public void fill(TokenBuffer buffer) throws IOException {
+            while (!buffer.isFull()) {
+                while (batch == null || token == batch.tokens.size()) {
+                    nextBatch();
+                }
+                TokenBuffer tokens = batch.tokens;
+                LexicalUnit type = tokens.getType(token);
+                int value = tokens.getValue(token);
+                if (type == LexicalUnit.VARNAME || type == LexicalUnit.PROGNAME) {
+                    if (batch.names[value] < 0) {
+                        batch.names[value] = buffer.intern(tokens.getName(value));
+                    }
+                    value = batch.names[value];
+                }
+                buffer.add(type, tokens.getOffset(token), tokens.getLine(token) - 1, tokens.getColumn(token), value);
+                if (type == LexicalUnit.EOS) {
+                    // The EOS token is recorded again by each call
+                    return;
+                }
+                token++;
+            }
+        }
+
+        /**
+         * Gives the batch read back to the lexer and waits for the next one.
+         *
+         * @throws IOException if interrupted while waiting, or the error of the lexer after the tokens of the batch
+         * read.
+         * @throws RuntimeException the error of the lexer after the tokens of the batch read.
+         */
+        private void nextBatch() throws IOException {
+            if (batch != null) {
+                if (batch.error instanceof IOException e) {
+                    throw e;
+                } else if (batch.error != null) {
+                    throw (RuntimeException) batch.error;
+                }
+                freeBatches.add(batch);
+            }
+            try {
+                batch = lexedBatches.take();
+            } catch (InterruptedException e) {
+                batch = null;
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while lexing");
+            }
+            token = 0;
+            int nameCount = batch.tokens.getNameCount();
+            if (batch.names.length < nameCount) {
+                int known = batch.names.length;
+                batch.names = Arrays.copyOf(batch.names, Math.max(nameCount, 2 * known));
+                Arrays.fill(batch.names, known, batch.names.length, -1);
+            }
+        }
+    }
+}
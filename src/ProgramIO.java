@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The input and output of a running GILLES program.
+ *
+ * The integers are read and written through buffers of their own: IN behaves like the {@code scanf("%d")} of the
+ * generated LLVM code (leading whitespace skipped, optional sign, 0 if no integer can be read) and OUT prints the
+ * value followed by a newline. What is printed is only written to the output stream when the buffer is full or
+ * flushed.
+ */
+public class ProgramIO {
+
+    /**
+     * Size (in bytes) of the input and output buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] inBuffer = new byte[BUFFER_SIZE];
+    private int inPosition, inLength;
+    private final byte[] outBuffer = new byte[BUFFER_SIZE];
+    private int outLength;
+
+    /**
+     * Creates the input and output of a program.
+     *
+     * @param in The stream from which IN reads.
+     * @param out The stream to which OUT prints.
+     */
+    public ProgramIO(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Returns the next byte of the input, or -1 at its end.
+     *
+     * @return The next byte.
+     * @throws IOException If reading fails.
+     */
+    private int read() throws IOException {
+        if (inPosition == inLength) {
+            inLength = in.read(inBuffer, 0, BUFFER_SIZE);
+            inPosition = 0;
+            if (inLength <= 0) {
+                inLength = 0;
+                return -1;
+            }
+        }
+        return inBuffer[inPosition++];
+    }
+
+    /**
+     * Reads the next integer of the input.
+     *
+     * @return The integer read, or 0 if there is none.
+     * @throws IOException If reading fails.
+     */
+    public int readInt() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B) {
+            c = read();
+        }
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            c = read();
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = read();
+        }
+        if (c != -1) {
+            // The character ending the integer is left for the next read, as scanf does
+            inPosition--;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Prints an integer followed by a newline.
+     *
+     * @param value The integer to print.
+     * @throws IOException If writing fails.
+     */
+    public void println(int value) throws IOException {
+        if (outLength + 12 > BUFFER_SIZE) {
+            flush();
+        }
+        long v = value;
+        if (v < 0) {
+            outBuffer[outLength++] = '-';
+            v = -v;
+        }
+        int start = outLength;
+        do {
+            outBuffer[outLength++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = outLength - 1; i < j; i++, j--) {
+            byte digit = outBuffer[i];
+            outBuffer[i] = outBuffer[j];
+            outBuffer[j] = digit;
+        }
+        outBuffer[outLength++] = '\n';
+    }
+
+    /**
+     * Writes the printed integers still in the buffer.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void flush() throws IOException {
+        out.write(outBuffer, 0, outLength);
+        out.flush();
+        outLength = 0;
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A trace of the rules applied by a {@link Parser}, cheap enough to be kept on: applying a rule only counts it, and
+ * optionally records it in a ring of the last rules applied and samples the time until the next rule. The text of the
+ * rules is only made when the trace is dumped by {@link #formatCounts()} or {@link #formatRecent(boolean)}.
+ *
+ * The rules are numbered from 1 as in {@link LL1Table#RULES}. The time sampled after a rule is the time the parser
+ * takes until it applies the next one, matching the tokens and lexing them on the way.
+ */
+public class RuleTrace {
+    /**
+     * Number of rules of the grammar.
+     */
+    public static final int RULE_COUNT = LL1Table.RULES.length;
+    /**
+     * Width (in characters) of the widest left-hand side of a rule.
+     */
+    private static final int WIDEST_LHS = 13; // <Instruction>
+    /**
+     * Width (in characters) of the highest rule number.
+     */
+    private static final int WIDEST_NUMBER = String.valueOf(RULE_COUNT).length();
+
+    /**
+     * The number of applications of each rule, by rule number.
+     */
+    private final long[] counts = new long[RULE_COUNT + 1];
+    private long applied;
+
+    /**
+     * The last rules applied, as a ring whose next entry to write is {@link #recentNext}, or null if not kept.
+     */
+    private final int[] recent;
+    private int recentNext;
+
+    /**
+     * The number of applications between two samples of the time, or 0 if the time is not sampled.
+     */
+    private final int sampleInterval;
+    /**
+     * The time sampled after each rule, in nanoseconds, and the number of samples, by rule number.
+     */
+    private final long[] sampledTimes, samples;
+    private int untilSample;
+    /**
+     * The rule being sampled, until the next rule is applied, or 0.
+     */
+    private int sampledRule;
+    private long sampleStart;
+
+    /**
+     * Creates a trace counting the rules only.
+     */
+    public RuleTrace() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a trace.
+     *
+     * @param recentSize The number of last rules applied to keep, or 0 to keep none.
+     * @param sampleInterval The time is sampled after one application of a rule every that many, or never if 0.
+     */
+    public RuleTrace(int recentSize, int sampleInterval) {
+        recent = recentSize > 0 ? new int[recentSize] : null;
+        this.sampleInterval = sampleInterval;
+        untilSample = sampleInterval;
+        sampledTimes = sampleInterval > 0 ? new long[RULE_COUNT + 1] : null;
+        samples = sampleInterval > 0 ? new long[RULE_COUNT + 1] : null;
+    }
+
+    /**
+     * Records the application of a rule.
+     *
+     * @param rule The number of the rule.
+     */
+    public void apply(int rule) {
+        counts[rule]++;
+        applied++;
+        if (recent != null) {
+            recent[recentNext] = rule;
+            recentNext = recentNext + 1 == recent.length ? 0 : recentNext + 1;
+        }
+        if (sampleInterval > 0) {
+            if (sampledRule != 0) {
+                sampledTimes[sampledRule] += System.nanoTime() - sampleStart;
+                samples[sampledRule]++;
+                sampledRule = 0;
+            }
+            if (--untilSample == 0) {
+                untilSample = sampleInterval;
+                sampledRule = rule;
+                sampleStart = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Forgets the rules applied, to trace another parse.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        applied = 0;
+        recentNext = 0;
+        if (recent != null) {
+            Arrays.fill(recent, 0);
+        }
+        if (sampleInterval > 0) {
+            Arrays.fill(sampledTimes, 0);
+            Arrays.fill(samples, 0);
+            untilSample = sampleInterval;
+            sampledRule = 0;
+        }
+    }
+
+    /**
+     * Returns the number of applications of a rule.
+     *
+     * @param rule The number of the rule.
+     * @return The number of applications.
+     */
+    public long getCount(int rule) {
+        return counts[rule];
+    }
+
+    /**
+     * Returns the number of applications of all the rules.
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * Returns the mean of the times sampled after a rule.
+     *
+     * @param rule The number of the rule.
+     * @return The mean time, in nanoseconds, or -1 if the rule has not been sampled.
+     */
+    public long getMeanTime(int rule) {
+        return sampleInterval == 0 || samples[rule] == 0 ? -1 : sampledTimes[rule] / samples[rule];
+    }
+
+    /**
+     * Returns the last rules applied.
+     *
+     * @return The numbers of the rules, the oldest first; empty if they are not kept.
+     */
+    public int[] getRecent() {
+        if (recent == null) {
+            return new int[0];
+        }
+        int size = (int) Math.min(applied, recent.length);
+        int[] rules = new int[size];
+        for (int i = 0; i < size; i++) {
+            rules[i] = recent[Math.floorMod(recentNext - size + i, recent.length)];
+        }
+        return rules;
+    }
+
+    /**
+     * Returns the rules applied at least once with their number of applications, and the mean time sampled after
+     * them if the time is sampled.
+     *
+     * @return A line per rule.
+     */
+    public String formatCounts() {
+        StringBuilder text = new StringBuilder();
+        for (int rule = 1; rule <= RULE_COUNT; rule++) {
+            if (counts[rule] == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.ROOT, "%-" + (WIDEST_LHS + WIDEST_NUMBER + 50) + "s %12d", full(rule), counts[rule]));
+            if (getMeanTime(rule) >= 0) {
+                text.append(String.format(Locale.ROOT, " %10d ns", getMeanTime(rule)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the last rules applied, the oldest first.
+     *
+     * @param full Whether to write each rule on a line of its own with its text (true) or only the numbers (false).
+     * @return The rules.
+     */
+    public String formatRecent(boolean full) {
+        StringBuilder text = new StringBuilder();
+        for (int rule : getRecent()) {
+            if (full) {
+                text.append(full(rule)).append('\n');
+            } else {
+                text.append(rule).append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the text of a rule, with its number, its left-hand side and its right-hand side aligned as in a table.
+     */
+    private static String full(int rule) {
+        LL1Table.Rule r = LL1Table.RULES[rule - 1];
+        return String.format(Locale.ROOT, "   [%d]%s%-" + (WIDEST_LHS + 2) + "s→  %s", rule,
+                " ".repeat(1 + WIDEST_NUMBER - String.valueOf(rule).length()), "<" + r.lhs() + ">", r.text());
+    }
+}
@@ -1,6 +1,12 @@
+import java.util.Objects;
+
 /**
  * Symbol objects represent a terminal or non-terminal symbol in the grammar.
  * 
+ * Symbols are immutable, so that the labels of the variables and the terminals without position, which are the same
+ * for all the nodes having them, are shared rather than made for each node (see {@link #of(NonTerminal)} and
+ * {@link #of(LexicalUnit)}).
+ * 
  * @author Not fully determined but assumed to be among Marie Van Den Bogaard, Léo Exibard, Gilles Geeraerts. Javadoc by Mathieu Sassolas.
  */
  
@@ -32,6 +38,25 @@
      */
 	private final int line,column;
 
+    /**
+     * The labels of the variables, one per variable, shared by all the trees.
+     */
+	private static final Symbol[] VARIABLE_LABELS = new Symbol[NonTerminal.values().length];
+
+    /**
+     * The terminals without position nor value, one per lexical unit, shared by all the trees.
+     */
+	private static final Symbol[] UNIT_LABELS = new Symbol[LexicalUnit.values().length];
+
+	static {
+		for (NonTerminal variable : NonTerminal.values()) {
+			VARIABLE_LABELS[variable.ordinal()] = new Symbol(null, variable);
+		}
+		for (LexicalUnit unit : LexicalUnit.values()) {
+			UNIT_LABELS[unit.ordinal()] = new Symbol(unit);
+		}
+	}
+
     /**
      * Creates a Symbol using the provided attributes.
      * 
@@ -87,6 +112,26 @@
 		this(unit,UNDEFINED_POSITION,UNDEFINED_POSITION,value);
 	}
 
+    /**
+     * Returns the label of a variable, the same Symbol for all the nodes of the variable.
+     * 
+     * @param variable the variable.
+     * @return the shared Symbol of the variable, as made by <code>new Symbol(null,variable)</code>.
+     */
+	public static Symbol of(NonTerminal variable){
+		return VARIABLE_LABELS[variable.ordinal()];
+	}
+
+    /**
+     * Returns the terminal without position nor value, the same Symbol for all the nodes of the lexical unit.
+     * 
+     * @param unit the LexicalUnit (terminal).
+     * @return the shared Symbol of the terminal, as made by <code>new Symbol(unit)</code>.
+     */
+	public static Symbol of(LexicalUnit unit){
+		return UNIT_LABELS[unit.ordinal()];
+	}
+
     /**
      * Returns whether the symbol represents a terminal.
      * 
@@ -148,15 +193,24 @@
 	}
 	
     /**
-     * Returns a hash code value for the object.
+     * Returns a hash code value for the object, without allocating.
      * 
-     * @return a hash code based on the type and value of the Symbol.
+     * @return a hash code based on the type and value of the Symbol, as {@link #equals(Object)}.
      */
 	@Override
 	public int hashCode(){
-		final String value	= this.value != null? this.value.toString() : "null";
-		final String type		= this.type  != null? this.type.toString()  : "null";
-		return new String(value+"_"+type).hashCode();
+		return 31*Objects.hashCode(this.value) + (this.type != null? this.type.ordinal() : -1);
+	}
+
+    /**
+     * Returns whether the object is a Symbol of the same type and value, wherever they appear in the file.
+     * 
+     * @param other the object to compare with.
+     * @return a boolean which is true iff the other object is a Symbol of the same type and value.
+     */
+	@Override
+	public boolean equals(Object other){
+		return other instanceof Symbol symbol && this.type == symbol.type && Objects.equals(this.value, symbol.value);
 	}
 	
     /**
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The variables of a program, registered by the {@link Parser} as it matches their names.
+ *
+ * Each variable gets a slot: its index from 0 in order of first appearance, so that the slots are dense and the code
+ * generators keep what they know of the variables in arrays indexed by slot rather than in maps from their names.
+ * The table also counts the definitions of each variable, as the target of an assignment or of an IN, and its uses,
+ * in an expression or by an OUT.
+ */
+public class SymbolTable {
+    private final HashMap<String, Integer> slots = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] definitions = new int[16];
+    private int[] uses = new int[16];
+    private int size;
+
+    /**
+     * Returns the slot of a variable, giving it the next one if it is new.
+     *
+     * @param name The name of the variable.
+     * @return The slot of the variable.
+     */
+    public int add(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, 2 * size);
+            definitions = Arrays.copyOf(definitions, 2 * size);
+            uses = Arrays.copyOf(uses, 2 * size);
+        }
+        names[size] = name;
+        slots.put(name, size);
+        return size++;
+    }
+
+    /**
+     * Returns the slot of a variable.
+     *
+     * @param name The name of the variable.
+     * @return The slot of the variable, or -1 if it is not in the table.
+     */
+    public int getSlot(String name) {
+        return slots.getOrDefault(name, -1);
+    }
+
+    /**
+     * Counts a definition of a variable.
+     *
+     * @param slot The slot of the variable.
+     */
+    public void define(int slot) {
+        definitions[slot]++;
+    }
+
+    /**
+     * Counts a use of a variable.
+     *
+     * @param slot The slot of the variable.
+     */
+    public void use(int slot) {
+        uses[slot]++;
+    }
+
+    /**
+     * Returns the number of variables, which is the slot the next new variable gets.
+     *
+     * @return The number of variables.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name of a variable.
+     *
+     * @param slot The slot of the variable.
+     * @return The name of the variable.
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the number of definitions of a variable counted so far.
+     *
+     * @param slot The slot of the variable.
+     * @return The number of definitions, as the target of an assignment or of an IN.
+     */
+    public int getDefinitions(int slot) {
+        return definitions[slot];
+    }
+
+    /**
+     * Returns the number of uses of a variable counted so far.
+     *
+     * @param slot The slot of the variable.
+     * @return The number of uses, in an expression or by an OUT.
+     */
+    public int getUses(int slot) {
+        return uses[slot];
+    }
+
+    /**
+     * Returns the names of the variables, by slot.
+     *
+     * @return A list of the names, which does not follow the variables added afterwards.
+     */
+    public List<String> getNames() {
+        return List.of(Arrays.copyOf(names, size));
+    }
+}
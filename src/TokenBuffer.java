@@ -0,0 +1,253 @@
+import java.util.Arrays;
+
+/**
+ * A buffer of tokens stored in parallel int arrays, filled by a {@link TokenSource} and read by the {@link Parser}.
+ *
+ * Each token is its lexical unit, its offset in the input, its line and column, and an int value: the number itself
+ * for a NUMBER, the index of its name in the table of names for a VARNAME or a PROGNAME, and {@link #NO_VALUE} for
+ * the keywords and punctuation, whose text is fixed. Each distinct name is kept once in the table, so that lexing a
+ * token allocates nothing unless it is the first occurrence of a name.
+ *
+ * The buffer is meant to be reused: {@link #clear()} removes the tokens but keeps the table of names, so that a
+ * parser reads a long input through a buffer of a fixed size, filled again each time it has been read.
+ */
+public class TokenBuffer {
+    /**
+     * Value of the tokens without value.
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+
+    private final int[] types;
+    private final int[] offsets;
+    /**
+     * The line of each token, as given by {@link Symbol#getLine()}.
+     */
+    private final int[] lines;
+    private final int[] columns;
+    private final int[] values;
+    private int size;
+
+    private String[] names = new String[64];
+    private int nameCount;
+    /**
+     * Open addressing hash table of the names: the index of a name plus one, or 0 for an empty slot.
+     */
+    private int[] nameSlots = new int[128];
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param capacity the number of tokens the buffer holds.
+     */
+    public TokenBuffer(int capacity) {
+        types = new int[capacity];
+        offsets = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds a token at the end of the buffer.
+     *
+     * @param unit the lexical unit of the token.
+     * @param offset the offset of the token in the input, in characters.
+     * @param line the line of the token, from 0 as counted by the lexer.
+     * @param column the column of the token.
+     * @param value the value of the token, or {@link #NO_VALUE}.
+     * @throws IllegalStateException if the buffer is full.
+     */
+    public void add(LexicalUnit unit, int offset, int line, int column, int value) {
+        if (size == types.length) {
+            throw new IllegalStateException("Token buffer full");
+        }
+        types[size] = unit.ordinal();
+        offsets[size] = offset;
+        // Symbol stores the line of the lexer plus one
+        lines[size] = line + 1;
+        columns[size] = column;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Returns the index of a name in the table of names, adding it if it is new.
+     *
+     * @param text the characters holding the name.
+     * @param start the index of the first character of the name.
+     * @param length the length of the name.
+     * @return the index of the name.
+     */
+    public int intern(char[] text, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + text[i];
+        }
+        int mask = nameSlots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int index = nameSlots[slot] - 1;
+            if (index < 0) {
+                break;
+            }
+            if (names[index].hashCode() == hash && sameName(names[index], text, start, length)) {
+                return index;
+            }
+        }
+        return addName(new String(text, start, length));
+    }
+
+    /**
+     * Returns the index of a name in the table of names, adding it if it is new.
+     *
+     * @param name the name.
+     * @return the index of the name.
+     */
+    public int intern(String name) {
+        int hash = name.hashCode();
+        int mask = nameSlots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int index = nameSlots[slot] - 1;
+            if (index < 0) {
+                break;
+            }
+            if (names[index].equals(name)) {
+                return index;
+            }
+        }
+        return addName(name);
+    }
+
+    private static boolean sameName(String name, char[] text, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != text[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a name which is not in the table yet.
+     */
+    private int addName(String name) {
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, 2 * nameCount);
+        }
+        names[nameCount] = name;
+        nameCount++;
+        if (2 * nameCount > nameSlots.length) {
+            nameSlots = new int[2 * nameSlots.length];
+            for (int i = 0; i < nameCount; i++) {
+                insert(i);
+            }
+        } else {
+            insert(nameCount - 1);
+        }
+        return nameCount - 1;
+    }
+
+    private void insert(int index) {
+        int mask = nameSlots.length - 1;
+        int slot = mix(names[index].hashCode()) & mask;
+        while (nameSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        nameSlots[slot] = index + 1;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Removes the tokens, keeping the table of names.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes the tokens and the names, for a new input.
+     */
+    public void reset() {
+        size = 0;
+        Arrays.fill(names, 0, nameCount, null);
+        nameCount = 0;
+        Arrays.fill(nameSlots, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == types.length;
+    }
+
+    public LexicalUnit getType(int token) {
+        return UNITS[types[token]];
+    }
+
+    public int getOffset(int token) {
+        return offsets[token];
+    }
+
+    public int getLine(int token) {
+        return lines[token];
+    }
+
+    public int getColumn(int token) {
+        return columns[token];
+    }
+
+    public int getValue(int token) {
+        return values[token];
+    }
+
+    /**
+     * Returns the number of names in the table of names.
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Returns a name of the table of names.
+     *
+     * @param index the index of the name, as given by {@link #getValue(int)} for a name.
+     * @return the name.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the value a token has as a {@link Symbol}: the name, the boxed number, or the fixed text of the token.
+     *
+     * @param token the index of the token.
+     * @return the value of the token, which is null for EOS.
+     */
+    public Object getSymbolValue(int token) {
+        return switch (UNITS[types[token]]) {
+            case VARNAME, PROGNAME -> names[values[token]];
+            case NUMBER -> Integer.valueOf(values[token]);
+            case EOS -> null;
+            default -> UNITS[types[token]].toString();
+        };
+    }
+
+    /**
+     * Returns a token as a {@link Symbol}, as the lexer would have returned it.
+     *
+     * @param token the index of the token.
+     * @return a new Symbol.
+     */
+    public Symbol toSymbol(int token) {
+        return new Symbol(UNITS[types[token]], lines[token] - 1, columns[token], getSymbolValue(token));
+    }
+}
@@ -0,0 +1,17 @@
+import java.io.IOException;
+
+/**
+ * A lexer able to record its tokens in a {@link TokenBuffer} rather than returning them as {@link Symbol}s.
+ */
+public interface TokenSource {
+    /**
+     * Lexes tokens into the buffer, after the tokens it already holds, until it is full or the end of the input has
+     * been recorded as an EOS token. Once at the end of the input, each call records one more EOS token.
+     *
+     * @param buffer the buffer to record the tokens in.
+     * @throws IOException if reading the input fails.
+     * @throws java.util.regex.PatternSyntaxException if the input contains a character which starts no token, the
+     * tokens recorded before it being kept.
+     */
+    void fill(TokenBuffer buffer) throws IOException;
+}